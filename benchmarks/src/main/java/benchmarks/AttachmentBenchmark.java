@@ -0,0 +1,93 @@
+package benchmarks;
+
+import io.qameta.allure.Allure;
+import io.qameta.allure.AllureLifecycle;
+import io.qameta.allure.model.TestResult;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import reportConfig.AllureTestListener;
+import reportConfig.AttachmentWriter;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 1)
+@Measurement(iterations = 3, time = 1)
+@Fork(1)
+public class AttachmentBenchmark {
+    //Cost paid by the TestNG thread to attach a failure screenshot / text, against a synchronous Allure write
+
+    private static final Path RESULTS_DIRECTORY;
+
+    static {
+        try {
+            RESULTS_DIRECTORY = Files.createTempDirectory("allure-benchmark");
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        //Must be set before AttachmentWriter reads the Allure properties
+        System.setProperty("allure.results.directory", RESULTS_DIRECTORY.toString());
+    }
+
+    private final AllureLifecycle lifecycle = Allure.getLifecycle();
+    private final Stubs.StubWebDriver driver = new Stubs.StubWebDriver(Stubs.screenshotPng());
+    private String testUuid;
+
+    @Setup(Level.Iteration)
+    public void startTestCase() {
+        testUuid = UUID.randomUUID().toString();
+        lifecycle.scheduleTestCase(new TestResult().setUuid(testUuid).setName("attachmentBenchmark"));
+        lifecycle.startTestCase(testUuid);
+    }
+
+    @TearDown(Level.Iteration)
+    public void stopTestCase() {
+        AttachmentWriter.getWriter().flush(60000);
+        lifecycle.stopTestCase(testUuid);
+        lifecycle.writeTestCase(testUuid);
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteResults() throws IOException {
+        System.out.println(AttachmentWriter.getWriter().getMetrics());
+        try (Stream<Path> files = Files.walk(RESULTS_DIRECTORY)) {
+            files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    @Benchmark
+    public void asyncScreenshot() {
+        AttachmentWriter.getWriter().attachScreenshot("Screenshot of benchmark", driver);
+    }
+
+    @Benchmark
+    public void asyncText() {
+        AttachmentWriter.getWriter().attachText("Text attachment of benchmark", "benchmark failed and screenshot taken!");
+    }
+
+    //What @Attachment does on the test thread: capture + write the full PNG
+    @Benchmark
+    public void synchronousScreenshot() {
+        lifecycle.addAttachment("Screenshot of benchmark", "image/png", "png",
+                AllureTestListener.saveScreenshotPNG("benchmark", driver));
+    }
+}
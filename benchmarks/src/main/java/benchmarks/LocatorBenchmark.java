@@ -0,0 +1,99 @@
+package benchmarks;
+
+import commons.BasePage;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openqa.selenium.By;
+
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LocatorBenchmark {
+    //BasePage.getByLocator / getDynamicLocator against the original startsWith parser
+
+    private static final String LOGIN_LINK = "xpath=//div[@class='header-links']//a[text()='Log in']";
+    private static final String MENU_LINK = "xpath=//ul[@class='top-menu notmobile']//a[text()='%s']";
+
+    public static class Page extends BasePage {
+        By byLocator(String locator) {
+            return getByLocator(locator);
+        }
+
+        By byLocator(String locator, String... restParams) {
+            return getByLocator(locator, restParams);
+        }
+
+        String dynamicLocator(String locator, String... restParams) {
+            return getDynamicLocator(locator, restParams);
+        }
+    }
+
+    private final Page page = new Page();
+
+    @Benchmark
+    public By staticLocator() {
+        return page.byLocator(LOGIN_LINK);
+    }
+
+    @Benchmark
+    public By dynamicLocator() {
+        return page.byLocator(MENU_LINK, "Books");
+    }
+
+    @Benchmark
+    public String dynamicLocatorString() {
+        return page.dynamicLocator(MENU_LINK, "Books");
+    }
+
+    @Benchmark
+    public By legacyStaticLocator() {
+        return legacyGetByLocator(LOGIN_LINK);
+    }
+
+    @Benchmark
+    public By legacyDynamicLocator() {
+        return legacyGetByLocator(String.format(MENU_LINK, "Books"));
+    }
+
+    //BasePage.getByLocator before the locator cache (minus its trailing-else bug), kept as the baseline
+    private static By legacyGetByLocator(String locatorValue) {
+        By by = null;
+        if (locatorValue.startsWith("xpath=") || locatorValue.startsWith("Xpath=")
+                || locatorValue.startsWith("xPath=") || locatorValue.startsWith("XPATH=")) {
+            by = By.xpath(locatorValue.substring(6));
+        }
+        if (locatorValue.startsWith("css=") || locatorValue.startsWith("CSS=")
+                || locatorValue.startsWith("Css=") || locatorValue.startsWith("cSS=")) {
+            by = By.cssSelector(locatorValue.substring(4));
+        }
+        if (locatorValue.startsWith("id=") || locatorValue.startsWith("Id=")
+                || locatorValue.startsWith("iD=") || locatorValue.startsWith("ID=")) {
+            by = By.id(locatorValue.substring(3));
+        }
+        if (locatorValue.startsWith("name=") || locatorValue.startsWith("Name=")
+                || locatorValue.startsWith("NAME=") || locatorValue.startsWith("naMe=")) {
+            by = By.name(locatorValue.substring(5));
+        }
+        if (locatorValue.startsWith("class=") || locatorValue.startsWith("Class=")
+                || locatorValue.startsWith("CLASS=") || locatorValue.startsWith("cLass=")) {
+            by = By.className(locatorValue.substring(6));
+        }
+        if (locatorValue.startsWith("tagName=") || locatorValue.startsWith("tagname=")
+                || locatorValue.startsWith("TagName=") || locatorValue.startsWith("TAGNAME=")) {
+            by = By.tagName(locatorValue.substring(8));
+        }
+        return by;
+    }
+}
@@ -0,0 +1,229 @@
+package benchmarks;
+
+import org.openqa.selenium.By;
+import org.openqa.selenium.JavascriptExecutor;
+import org.openqa.selenium.OutputType;
+import org.openqa.selenium.TakesScreenshot;
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.WebElement;
+import org.testng.IInvokedMethod;
+import org.testng.ISuite;
+import org.testng.ITestContext;
+import org.testng.ITestNGMethod;
+import org.testng.ITestResult;
+
+import javax.imageio.ImageIO;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.lang.reflect.Proxy;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+public class Stubs {
+    //Minimal in-memory TestNG/WebDriver objects, enough for the framework code paths under benchmark
+
+    private Stubs() {
+    }
+
+    public static class StubWebDriver implements WebDriver, TakesScreenshot, JavascriptExecutor {
+        private final byte[] screenshot;
+
+        public StubWebDriver(byte[] screenshot) {
+            this.screenshot = screenshot;
+        }
+
+        @Override
+        public <X> X getScreenshotAs(OutputType<X> target) {
+            return target.convertFromPngBytes(screenshot);
+        }
+
+        @Override
+        public Object executeScript(String script, Object... args) {
+            return null;
+        }
+
+        @Override
+        public Object executeAsyncScript(String script, Object... args) {
+            return null;
+        }
+
+        @Override
+        public void get(String url) {
+        }
+
+        @Override
+        public String getCurrentUrl() {
+            return "http://localhost/";
+        }
+
+        @Override
+        public String getTitle() {
+            return "stub";
+        }
+
+        @Override
+        public List<WebElement> findElements(By by) {
+            return Collections.emptyList();
+        }
+
+        @Override
+        public WebElement findElement(By by) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public String getPageSource() {
+            return "<html></html>";
+        }
+
+        @Override
+        public void close() {
+        }
+
+        @Override
+        public void quit() {
+        }
+
+        @Override
+        public Set<String> getWindowHandles() {
+            return Collections.singleton("main");
+        }
+
+        @Override
+        public String getWindowHandle() {
+            return "main";
+        }
+
+        @Override
+        public TargetLocator switchTo() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Navigation navigate() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Options manage() {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    //A 1920x1080 PNG with some content, the size getBrowserEnvironment uses
+    public static byte[] screenshotPng() {
+        BufferedImage image = new BufferedImage(1920, 1080, BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = image.createGraphics();
+        graphics.setColor(Color.WHITE);
+        graphics.fillRect(0, 0, 1920, 1080);
+        graphics.setColor(Color.DARK_GRAY);
+        for (int y = 40; y < 1080; y += 40) {
+            graphics.drawString("Error 500 - the server encountered an internal error, line " + y, 20, y);
+        }
+        graphics.dispose();
+        try {
+            ByteArrayOutputStream output = new ByteArrayOutputStream();
+            ImageIO.write(image, "png", output);
+            return output.toByteArray();
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    public static ITestResult testResult(String name) {
+        Map<String, Object> attributes = new HashMap<>();
+        Object[] state = {null, ITestResult.SUCCESS};
+        ITestNGMethod method = proxy(ITestNGMethod.class, (methodName, args) -> {
+            switch (methodName) {
+                case "getMethodName":
+                    return name;
+                default:
+                    return null;
+            }
+        });
+        ISuite suite = proxy(ISuite.class, (methodName, args) -> methodName.equals("getName") ? "benchmark" : null);
+        ITestContext context = proxy(ITestContext.class, (methodName, args) -> methodName.equals("getSuite") ? suite : null);
+        return proxy(ITestResult.class, (methodName, args) -> {
+            switch (methodName) {
+                case "getName":
+                    return name;
+                case "getMethod":
+                    return method;
+                case "getTestContext":
+                    return context;
+                case "getThrowable":
+                    return state[0];
+                case "setThrowable":
+                    state[0] = args[0];
+                    return null;
+                case "getStatus":
+                    return state[1];
+                case "setStatus":
+                    state[1] = args[0];
+                    return null;
+                case "isSuccess":
+                    return Integer.valueOf(ITestResult.SUCCESS).equals(state[1]);
+                case "getAttribute":
+                    return attributes.get(args[0]);
+                case "setAttribute":
+                    attributes.put((String) args[0], args[1]);
+                    return null;
+                case "removeAttribute":
+                    return attributes.remove(args[0]);
+                default:
+                    return null;
+            }
+        });
+    }
+
+    public static IInvokedMethod testMethodInvocation(ITestResult result) {
+        return proxy(IInvokedMethod.class, (methodName, args) -> {
+            switch (methodName) {
+                case "isTestMethod":
+                    return true;
+                case "getTestMethod":
+                    return result.getMethod();
+                case "getTestResult":
+                    return result;
+                default:
+                    return null;
+            }
+        });
+    }
+
+    private interface Handler {
+        Object invoke(String methodName, Object[] args);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T proxy(Class<T> type, Handler handler) {
+        return (T) Proxy.newProxyInstance(Stubs.class.getClassLoader(), new Class<?>[]{type}, (proxy, method, args) -> {
+            switch (method.getName()) {
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "equals":
+                    return proxy == args[0];
+                case "toString":
+                    return type.getSimpleName() + "@" + Integer.toHexString(System.identityHashCode(proxy));
+                default:
+                    Object value = handler.invoke(method.getName(), args);
+                    if (value == null && method.getReturnType() == boolean.class) {
+                        return false;
+                    }
+                    if (value == null && method.getReturnType() == int.class) {
+                        return 0;
+                    }
+                    if (value == null && method.getReturnType() == long.class) {
+                        return 0L;
+                    }
+                    return value;
+            }
+        });
+    }
+}
@@ -0,0 +1,68 @@
+package benchmarks;
+
+import commons.TestNGAppender;
+import org.apache.logging.log4j.Level;
+import org.apache.logging.log4j.core.LogEvent;
+import org.apache.logging.log4j.core.impl.ContextDataFactory;
+import org.apache.logging.log4j.core.impl.Log4jLogEvent;
+import org.apache.logging.log4j.core.layout.PatternLayout;
+import org.apache.logging.log4j.message.SimpleMessage;
+import org.apache.logging.log4j.util.StringMap;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.testng.ITestResult;
+
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TestNGAppenderBenchmark {
+    //TestNGAppender.append for an event of a running test (layout + per-test ring buffer)
+
+    private TestNGAppender appender;
+    private LogEvent event;
+
+    @Setup
+    public void setUp() {
+        PatternLayout layout = PatternLayout.newBuilder()
+                .withPattern("[%d{dd-MM-YYYY HH:mm:ss.SSS} %level %logger{36}] - %msg%n")
+                .build();
+        appender = TestNGAppender.createAppender("benchmark", layout, null, null, 1000);
+        appender.start();
+
+        ITestResult result = Stubs.testResult("appenderBenchmark");
+        TestNGAppender.bindTestResult(result);
+        StringMap contextData = ContextDataFactory.createContextData();
+        contextData.putValue(TestNGAppender.TEST_RESULT_KEY, result.getAttribute(TestNGAppender.TEST_RESULT_KEY));
+        event = Log4jLogEvent.newBuilder()
+                .setLoggerName("commons.BaseTest")
+                .setLevel(Level.INFO)
+                .setMessage(new SimpleMessage("Click to 'Log in' link on header"))
+                .setContextData(contextData)
+                .setTimeMillis(System.currentTimeMillis())
+                .build();
+    }
+
+    @TearDown
+    public void tearDown() {
+        appender.stop();
+    }
+
+    @Benchmark
+    public void append() {
+        appender.append(event);
+    }
+}
@@ -0,0 +1,77 @@
+package benchmarks;
+
+import commons.MethodListener;
+import commons.VerificationFailures;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.testng.IInvokedMethod;
+import org.testng.ITestResult;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class VerificationFailuresBenchmark {
+    //verify* failure bookkeeping and the merge done in MethodListener.afterInvocation
+
+    private final VerificationFailures failures = VerificationFailures.getFailures();
+    private final MethodListener listener = new MethodListener();
+    private final Throwable[] throwables = {
+            new AssertionError("expected [Books] but found [Computers]"),
+            new AssertionError("expected [true] but found [false]"),
+            new AssertionError("expected [1] but found [2]")
+    };
+    private ITestResult result;
+    private IInvokedMethod invokedMethod;
+
+    @Setup
+    public void setUp() {
+        result = Stubs.testResult("verifyBenchmark");
+        invokedMethod = Stubs.testMethodInvocation(result);
+    }
+
+    @Benchmark
+    public List<Throwable> addAndEvict() {
+        for (Throwable throwable : throwables) {
+            failures.addFailureForTest(result, throwable);
+        }
+        return failures.removeFailuresForTest(result);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public List<Throwable> addAndEvictContended() {
+        return addAndEvict();
+    }
+
+    @Benchmark
+    public List<Throwable> noFailureLookup() {
+        return failures.getFailuresForTest(result);
+    }
+
+    //Three verify failures + the result throwable, merged into one "Multiple failures" throwable
+    @Benchmark
+    public Throwable afterInvocationMerge() {
+        result.setStatus(ITestResult.SUCCESS);
+        result.setThrowable(throwables[2]);
+        for (Throwable throwable : throwables) {
+            failures.addFailureForTest(result, throwable);
+        }
+        listener.afterInvocation(invokedMethod, result);
+        return result.getThrowable();
+    }
+}
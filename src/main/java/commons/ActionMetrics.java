@@ -0,0 +1,231 @@
+package commons;
+
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.json.Json;
+import org.openqa.selenium.support.events.EventFiringDecorator;
+import org.openqa.selenium.support.events.WebDriverListener;
+
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class ActionMetrics {
+    //Timing of BasePage actions and waits: histograms per action and per action + locator,
+    //driver round trips, and time spent waiting (inside WaitEngine) versus acting
+    //Off unless -Dmetrics.enabled=true; callers check ENABLED first, a static final the JIT folds away
+
+    public static final boolean ENABLED = GlobalConstants.METRICS_ENABLED;
+
+    private static final int MAX_LOCATOR_KEYS = 1024;
+    private static final String OTHER_LOCATORS = "<other locators>";
+
+    private static final ThreadLocal<Scope> scope = ThreadLocal.withInitial(Scope::new);
+    private static final Map<String, Histogram> runActions = new ConcurrentHashMap<>();
+    private static final Map<String, Histogram> runLocators = new ConcurrentHashMap<>();
+    private static final AtomicLong runTests = new AtomicLong();
+    private static final AtomicLong runRoundTrips = new AtomicLong();
+    private static final AtomicLong runWaitNanos = new AtomicLong();
+    private static final AtomicLong runActNanos = new AtomicLong();
+
+    private ActionMetrics() {
+    }
+
+    //log2 buckets of microseconds: bucket i holds durations below 2^i us, enough for percentiles at a glance
+    static class Histogram {
+        private final long[] buckets = new long[40];
+        private long count;
+        private long totalNanos;
+        private long maxNanos;
+
+        void record(long nanos) {
+            long micros = nanos / 1000;
+            buckets[Math.min(buckets.length - 1, 64 - Long.numberOfLeadingZeros(micros))]++;
+            count++;
+            totalNanos += nanos;
+            maxNanos = Math.max(maxNanos, nanos);
+        }
+
+        synchronized void merge(Histogram other) {
+            for (int i = 0; i < buckets.length; i++) {
+                buckets[i] += other.buckets[i];
+            }
+            count += other.count;
+            totalNanos += other.totalNanos;
+            maxNanos = Math.max(maxNanos, other.maxNanos);
+        }
+
+        //Upper bound of the bucket holding the given percentile
+        private double percentileMillis(double percentile) {
+            long rank = (long) Math.ceil(count * percentile);
+            long seen = 0;
+            for (int i = 0; i < buckets.length; i++) {
+                seen += buckets[i];
+                if (seen >= rank) {
+                    return Math.min((1L << i) / 1000.0, maxNanos / 1_000_000.0);
+                }
+            }
+            return maxNanos / 1_000_000.0;
+        }
+
+        synchronized Map<String, Object> toMap() {
+            Map<String, Object> map = new LinkedHashMap<>();
+            map.put("count", count);
+            map.put("totalMillis", millis(totalNanos));
+            map.put("meanMillis", count == 0 ? 0 : millis(totalNanos / count));
+            map.put("p50Millis", percentileMillis(0.50));
+            map.put("p90Millis", percentileMillis(0.90));
+            map.put("p99Millis", percentileMillis(0.99));
+            map.put("maxMillis", millis(maxNanos));
+            return map;
+        }
+    }
+
+    //Per-thread counters of the running test, only touched by its own thread
+    private static class Scope {
+        private final Map<String, Histogram> actions = new HashMap<>();
+        private final Map<String, Histogram> locators = new HashMap<>();
+        private long roundTrips;
+        private long waitNanos;
+        private long actNanos;
+        //WaitEngine time since the current action started, not counted as acting
+        private long nestedWaitNanos;
+
+        private void record(String kind, String action, String locator, long nanos) {
+            actions.computeIfAbsent(kind + " " + action, key -> new Histogram()).record(nanos);
+            if (locator != null) {
+                locators.computeIfAbsent(action + " " + locator, key -> new Histogram()).record(nanos);
+            }
+        }
+    }
+
+    public static long start() {
+        scope.get().nestedWaitNanos = 0;
+        return System.nanoTime();
+    }
+
+    //click, sendkeys, select, getText...: the element lookup inside is waiting, the rest is acting
+    public static void recordAction(String action, String locator, long start) {
+        long nanos = System.nanoTime() - start;
+        Scope current = scope.get();
+        current.record("action", action, locator, nanos);
+        current.actNanos += Math.max(0, nanos - current.nestedWaitNanos);
+        current.nestedWaitNanos = 0;
+    }
+
+    //waitFor*, isPageLoadedSuccess: all of it is already counted as waiting by WaitEngine
+    public static void recordWait(String action, String locator, long start) {
+        Scope current = scope.get();
+        current.record("wait", action, locator, System.nanoTime() - start);
+        current.nestedWaitNanos = 0;
+    }
+
+    //Every WaitEngine.until, whoever calls it
+    static void recordWaitTime(long nanos) {
+        Scope current = scope.get();
+        current.waitNanos += nanos;
+        current.nestedWaitNanos += nanos;
+    }
+
+    //Counts every driver/element call that goes to the browser
+    public static WebDriver countRoundTrips(WebDriver driver) {
+        return new EventFiringDecorator<>(new RoundTripCounter()).decorate(driver);
+    }
+
+    private static class RoundTripCounter implements WebDriverListener {
+        @Override
+        public void beforeAnyCall(Object target, Method method, Object[] args) {
+            if (isRoundTrip(method)) {
+                scope.get().roundTrips++;
+            }
+        }
+
+        //manage(), navigate(), switchTo(), window()... only return local helper objects
+        private boolean isRoundTrip(Method method) {
+            Class<?> returnType = method.getReturnType();
+            if (method.getDeclaringClass() == Object.class || method.getName().equals("getWrappedDriver")
+                    || method.getName().equals("getWrappedElement")) {
+                return false;
+            }
+            return returnType != WebDriver.Options.class && returnType != WebDriver.Navigation.class
+                    && returnType != WebDriver.TargetLocator.class && returnType != WebDriver.Timeouts.class
+                    && returnType != WebDriver.Window.class;
+        }
+    }
+
+    //Start counting for a new test; whatever ran since the last test (configuration methods) goes to the run totals only
+    public static void startTest() {
+        mergeIntoRun(scope.get());
+        scope.set(new Scope());
+    }
+
+    //Metrics of the test that just finished on this thread, as JSON; they are added to the run totals
+    public static String endTest(String testName) {
+        Scope finished = scope.get();
+        scope.set(new Scope());
+        mergeIntoRun(finished);
+        runTests.incrementAndGet();
+
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("test", testName);
+        report.put("roundTrips", finished.roundTrips);
+        report.put("waitMillis", millis(finished.waitNanos));
+        report.put("actMillis", millis(finished.actNanos));
+        report.put("actions", toMaps(finished.actions));
+        report.put("locators", toMaps(finished.locators));
+        return new Json().toJson(report);
+    }
+
+    //Run totals so far, written over the previous file so an aborted run still leaves the last state
+    public static void writeRunReport() {
+        mergeIntoRun(scope.get());
+        scope.set(new Scope());
+
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("tests", runTests.get());
+        report.put("roundTrips", runRoundTrips.get());
+        report.put("waitMillis", millis(runWaitNanos.get()));
+        report.put("actMillis", millis(runActNanos.get()));
+        report.put("actions", toMaps(runActions));
+        report.put("locators", toMaps(runLocators));
+        Path file = Paths.get(GlobalConstants.METRICS_FILE);
+        try {
+            if (file.getParent() != null) {
+                Files.createDirectories(file.getParent());
+            }
+            Files.write(file, new Json().toJson(report).getBytes(StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            throw new RuntimeException("Cannot write action metrics to " + file, e);
+        }
+    }
+
+    private static void mergeIntoRun(Scope finished) {
+        finished.actions.forEach((key, histogram) -> runActions.computeIfAbsent(key, k -> new Histogram()).merge(histogram));
+        finished.locators.forEach((key, histogram) -> {
+            //Generated dynamic locators must not grow the run map without bound
+            String runKey = runLocators.size() < MAX_LOCATOR_KEYS || runLocators.containsKey(key) ? key : OTHER_LOCATORS;
+            runLocators.computeIfAbsent(runKey, k -> new Histogram()).merge(histogram);
+        });
+        runRoundTrips.addAndGet(finished.roundTrips);
+        runWaitNanos.addAndGet(finished.waitNanos);
+        runActNanos.addAndGet(finished.actNanos);
+    }
+
+    private static Map<String, Object> toMaps(Map<String, Histogram> histograms) {
+        Map<String, Object> maps = new TreeMap<>();
+        histograms.forEach((key, histogram) -> maps.put(key, histogram.toMap()));
+        return maps;
+    }
+
+    private static double millis(long nanos) {
+        return Math.round(nanos / 1000.0) / 1000.0;
+    }
+}
@@ -1,14 +1,19 @@
 package commons;
 
 import org.openqa.selenium.*;
-import org.openqa.selenium.support.ui.ExpectedCondition;
 import org.openqa.selenium.support.ui.ExpectedConditions;
 import org.openqa.selenium.support.ui.Select;
-import org.openqa.selenium.support.ui.WebDriverWait;
 
 import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Predicate;
 
 public class BasePage {
     //Action: click, sendkey, select,...
@@ -43,7 +48,7 @@ public class BasePage {
         driver.manage().deleteAllCookies();
     }
     protected Alert waitForAlertPresence(WebDriver driver){
-        return new WebDriverWait(driver, Duration.ofSeconds(longTimeout)).until(ExpectedConditions.alertIsPresent());
+        return waitFor("waitForAlertPresence", driver, null, ExpectedConditions.alertIsPresent());
     }
     protected void acceptToAlert(WebDriver driver){
         waitForAlertPresence(driver).accept();
@@ -58,141 +63,221 @@ public class BasePage {
         waitForAlertPresence(driver).sendKeys(valueToSend);
     }
     //Window handle
-    //Only use 2 windows/tabs
+    //Lookups go through the session's WindowRegistry: titles and URLs are cached, not read by visiting every window
+    protected WindowRegistry getWindowRegistry(WebDriver driver){
+        return WindowRegistry.of(driver);
+    }
+    //Switch to the newest window/tab other than windowId (with 2 windows: the other one)
     protected void switchToWindowById(WebDriver driver, String windowId){
-        Set<String> allIDs = driver.getWindowHandles();
-        for (String id : allIDs) {
-            if(!id.equals(windowId)) {
-                driver.switchTo().window(id);
-                break;
-            }
-        }
+        getWindowRegistry(driver).switchToNewest(windowId);
     }
     //Can use more than 2 windows/tabs
     protected void switchWindowByTitle(WebDriver driver, String expectedTitle){
-        Set<String> allIds = driver.getWindowHandles();
-        for (String id: allIds){
-            driver.switchTo().window(id);
-            String actualTitle = driver.getTitle();
-            if (actualTitle.equals(expectedTitle)){
-                break;
-            }
-        }
+        getWindowRegistry(driver).switchToTitle(expectedTitle);
+    }
+    protected void switchWindowByUrl(WebDriver driver, String expectedUrlPart){
+        getWindowRegistry(driver).switchToUrl(expectedUrlPart);
+    }
+    protected void switchWindow(WebDriver driver, Predicate<WindowRegistry.WindowInfo> condition, String description){
+        getWindowRegistry(driver).switchTo(condition, description);
     }
-    //Close all windows/tabs, except begining parent window/tab
+    //Close all windows/tabs, except begining parent window/tab, and switch back to it
     protected void closeAllWindowsWithoutParent(WebDriver driver, String expectedId){
-        Set<String> allIds = driver.getWindowHandles();
-        for (String id: allIds) {
-            if (!id.equals(expectedId)) {
-                driver.switchTo().window(id);
-                driver.close();
-            }
-        }
+        getWindowRegistry(driver).closeAllExcept(expectedId);
     }
 
     //Selenium Web Element Function
     //Dynamic locator
     protected By getByLocator (String locatorValue){
-        By by = null;
-        if (locatorValue.startsWith("xpath=") || locatorValue.startsWith("Xpath=")
-                || locatorValue.startsWith("xPath=") || locatorValue.startsWith("XPATH=")){
-            by = By.xpath(locatorValue.substring(6));
+        return LocatorCache.getBy(locatorValue);
+    }
+    protected By getByLocator(String locator, String... restParams){
+        return LocatorCache.getBy(locator, restParams);
+    }
+    protected String getDynamicLocator(String locator, String... restParams){
+        return LocatorCache.format(locator, restParams);
+    }
+    //No implicit wait on the session: element lookups poll through WaitEngine instead
+    protected WebElement getElement(WebDriver driver, String locator) {
+        return cacheElement(driver, locator, findElement(driver, getByLocator(locator)));
+    }
+    protected WebElement getElement(WebDriver driver, String locator, String... restParams) {
+        return getElement(driver, getDynamicLocator(locator, restParams));
+    }
+    protected List<WebElement> getListElement (WebDriver driver, String locator){
+        return findElements(driver, getByLocator(locator));
+    }
+    protected List<WebElement> getListElement (WebDriver driver, String locator, String... restParams){
+        return findElements(driver, getByLocator(locator, restParams));
+    }
+    private WebElement findElement(WebDriver driver, By by) {
+        try {
+            return explicitWait(driver).until(ExpectedConditions.presenceOfElementLocated(by));
+        } catch (TimeoutException e) {
+            throw new NoSuchElementException("Cannot locate an element using " + by, e);
         }
-        if (locatorValue.startsWith("css=") || locatorValue.startsWith("CSS=")
-                || locatorValue.startsWith("Css=") || locatorValue.startsWith("cSS=")){
-            by = By.cssSelector(locatorValue.substring(4));
+    }
+    //Same contract as implicit wait: wait for at least one element, empty list after the timeout
+    private List<WebElement> findElements(WebDriver driver, By by) {
+        try {
+            return explicitWait(driver).until(webDriver -> {
+                List<WebElement> elements = webDriver.findElements(by);
+                return elements.isEmpty() ? null : elements;
+            });
+        } catch (TimeoutException e) {
+            return Collections.emptyList();
         }
-        if (locatorValue.startsWith("id=") || locatorValue.startsWith("Id=")
-                || locatorValue.startsWith("iD=") || locatorValue.startsWith("ID=")){
-            by = By.id(locatorValue.substring(3));
+    }
+
+    //Page-scoped element cache: an element resolved once (by getElement or a waitFor*) is reused by the next reads
+    //and actions on the same locator, so a wait followed by an action costs one lookup
+    //Only for a SessionDriver (getBrowserEnvironment): it ends when WindowRegistry counts a navigation or a
+    //window/frame switch, or when the driver moved to another session (retry)
+    //A click that navigates or re-renders leaves stale elements behind: re-resolved on StaleElementReferenceException
+    protected void clearElementCache(){
+        elementCache.clear();
+    }
+    private WebElement cacheElement(WebDriver driver, String locator, WebElement element){
+        if (SessionDriver.isSessionDriver(driver)) {
+            validateElementCache(driver);
+            elementCache.put(locator, element);
         }
-        if (locatorValue.startsWith("name=") || locatorValue.startsWith("Name=")
-                || locatorValue.startsWith("NAME=") || locatorValue.startsWith("naMe=")){
-            by = By.name(locatorValue.substring(5));
+        return element;
+    }
+    private WebElement getCachedElement(WebDriver driver, String locator){
+        WebElement element = null;
+        if (SessionDriver.isSessionDriver(driver)) {
+            validateElementCache(driver);
+            element = elementCache.get(locator);
         }
-        if (locatorValue.startsWith("class=") || locatorValue.startsWith("Class=")
-                || locatorValue.startsWith("CLASS=") || locatorValue.startsWith("cLass=")){
-            by = By.className(locatorValue.substring(6));
+        return element != null ? element : getElement(driver, locator);
+    }
+    //No round trip: compares the session and its navigation count with the ones the cache was filled under
+    private void validateElementCache(WebDriver driver){
+        WebDriver sessionDriver = SessionDriver.unwrap(driver);
+        long navigation = WindowRegistry.of(sessionDriver).getNavigation();
+        if (sessionDriver != cachedDriver || navigation != cachedNavigation) {
+            elementCache.clear();
+            cachedDriver = sessionDriver;
+            cachedNavigation = navigation;
         }
-        if (locatorValue.startsWith("tagName=") || locatorValue.startsWith("tagname=")
-                || locatorValue.startsWith("TagName=") || locatorValue.startsWith("TAGNAME=")){
-            by = By.tagName(locatorValue.substring(8));
-        } else {
-            throw new RuntimeException("Locator type is not valid");
+    }
+    //Every element action goes through readElement/actOnElement and every wait through waitFor, so this is where they are timed
+    private <T> T readElement(String actionName, WebDriver driver, String locator, Function<WebElement, T> action){
+        if (!ActionMetrics.ENABLED) {
+            return applyToElement(driver, locator, action);
+        }
+        long start = ActionMetrics.start();
+        try {
+            return applyToElement(driver, locator, action);
+        } finally {
+            ActionMetrics.recordAction(actionName, locator, start);
         }
-        return by;
     }
-    protected String getDynamicLocator(String locator, String... restParams){
-        return String.format(locator, (Object[]) restParams);
+    private <T> T applyToElement(WebDriver driver, String locator, Function<WebElement, T> action){
+        try {
+            return action.apply(getCachedElement(driver, locator));
+        } catch (StaleElementReferenceException e) {
+            elementCache.remove(locator);
+            return action.apply(getCachedElement(driver, locator));
+        }
     }
-    protected WebElement getElement(WebDriver driver, String locator) {
-        return driver.findElement(getByLocator(locator));
+    private void actOnElement(String actionName, WebDriver driver, String locator, Consumer<WebElement> action){
+        readElement(actionName, driver, locator, element -> {
+            action.accept(element);
+            return null;
+        });
     }
-    protected List<WebElement> getListElement (WebDriver driver, String locator){
-        return driver.findElements(getByLocator(locator));
+    private <T> T waitFor(String waitName, WebDriver driver, String locator, Function<? super WebDriver, T> condition){
+        if (!ActionMetrics.ENABLED) {
+            return explicitWait(driver).until(condition);
+        }
+        long start = ActionMetrics.start();
+        try {
+            return explicitWait(driver).until(condition);
+        } finally {
+            ActionMetrics.recordWait(waitName, locator, start);
+        }
     }
 
     protected void clickToElement(WebDriver driver, String locator){
-        getElement(driver, locator).click();
+        actOnElement("clickToElement", driver, locator, WebElement::click);
     }
     protected void clickToElement(WebDriver driver, String locator, String... restParams){
-        getElement(driver, getDynamicLocator(locator, restParams)).click();
+        actOnElement("clickToElement", driver, getDynamicLocator(locator, restParams), WebElement::click);
     }
     protected void sendkeyToElement(WebDriver driver, String locator, String valueToSend){
-        getElement(driver, locator).clear();
-        getElement(driver, locator).sendKeys(valueToSend);
+        actOnElement("sendkeyToElement", driver, locator, element -> {
+            element.clear();
+            element.sendKeys(valueToSend);
+        });
     }
     protected void sendkeyToElement(WebDriver driver, String locator, String valueToSend, String... restParams){
-        getElement(driver, getDynamicLocator(locator, restParams)).clear();
-        getElement(driver, getDynamicLocator(locator, restParams)).sendKeys(valueToSend);
+        sendkeyToElement(driver, getDynamicLocator(locator, restParams), valueToSend);
     }
     protected void selectDropdown(WebDriver driver, String locator, String itemText){
-        new Select(getElement(driver, locator)).selectByVisibleText(itemText);
+        actOnElement("selectDropdown", driver, locator, element -> new Select(element).selectByVisibleText(itemText));
     }
     protected void selectDropdown(WebDriver driver, String locator, String itemText, String... restParams){
-        new Select(getElement(driver, getDynamicLocator(locator, restParams))).selectByVisibleText(itemText);
+        selectDropdown(driver, getDynamicLocator(locator, restParams), itemText);
     }
     protected String getFirstSelectedOptionText(WebDriver driver, String locator){
-        return new Select(getElement(driver, locator)).getFirstSelectedOption().getText();
+        return readElement("getFirstSelectedOptionText", driver, locator, element -> new Select(element).getFirstSelectedOption().getText());
     }
     protected boolean isDropdownMultiple(WebDriver driver, String locator){
-        return new Select(getElement(driver, locator)).isMultiple();
+        return readElement("isDropdownMultiple", driver, locator, element -> new Select(element).isMultiple());
     }
     protected void selectItemInCustomDropdown(WebDriver driver, String xpathParent, String xpathChild, String expectedText){
-        getElement(driver, xpathParent).click();
-        List<WebElement> allItems = new WebDriverWait(driver, Duration.ofSeconds(longTimeout)).until(
+        clickToElement(driver, xpathParent);
+        List<WebElement> allItems = explicitWait(driver).until(
                 ExpectedConditions.visibilityOfAllElementsLocatedBy(getByLocator(xpathChild)));
-        for (WebElement tempElement : allItems) {
-            if (tempElement.getText().equals(expectedText)) {
-
-                ((JavascriptExecutor)driver).executeScript("arguments[0].scrollIntoViewIfNeeded(true);", tempElement);
-                sleepInSecond(5);
-
-                tempElement.click();
-                break;
-            }
+        //Read all item texts in one round trip instead of getText() per item
+        List<String> allTexts = DomBatchReader.readTexts(driver, allItems);
+        int index = allTexts.indexOf(expectedText);
+        if (index >= 0) {
+            WebElement tempElement = allItems.get(index);
+            ((JavascriptExecutor)driver).executeScript("arguments[0].scrollIntoViewIfNeeded(true);", tempElement);
+            explicitWait(driver).until(ExpectedConditions.elementToBeClickable(tempElement)).click();
         }
     }
     protected String getElementText(WebDriver driver, String locator){
-        return getElement(driver, locator).getText();
+        return readElement("getElementText", driver, locator, WebElement::getText);
     }
     protected String getElementText(WebDriver driver, String locator, String...restParams){
-        return getElement(driver, getDynamicLocator(locator, restParams)).getText();
+        return getElementText(driver, getDynamicLocator(locator, restParams));
     }
     protected String getElementAttribute(WebDriver driver, String locator, String attributeName){
-        return getElement(driver, locator).getAttribute(attributeName);
+        return readElement("getElementAttribute", driver, locator, element -> element.getAttribute(attributeName));
     }
     protected String getElementAttribute(WebDriver driver, String locator, String attributeName, String...restParams){
-        return getElement(driver, getDynamicLocator(locator, restParams)).getAttribute(attributeName);
+        return getElementAttribute(driver, getDynamicLocator(locator, restParams), attributeName);
     }
     protected String getElementCssValue(WebDriver driver, String locator, String propertyName){
-        return getElement(driver,locator).getCssValue(propertyName);
+        return readElement("getElementCssValue", driver, locator, element -> element.getCssValue(propertyName));
+    }
+    //Batch reads: one executeScript for many elements/properties, the methods above stay as the per-element fallback
+    protected List<ElementSnapshot> getListElementSnapshot(WebDriver driver, String locator){
+        return DomBatchReader.readList(driver, locator, Collections.emptyList(), Collections.emptyList());
+    }
+    protected List<ElementSnapshot> getListElementSnapshot(WebDriver driver, String locator, List<String> attributeNames, List<String> cssPropertyNames){
+        return DomBatchReader.readList(driver, locator, attributeNames, cssPropertyNames);
+    }
+    protected Map<String, ElementSnapshot> getElementSnapshots(WebDriver driver, String... locators){
+        return getElementSnapshots(driver, Arrays.asList(locators), Collections.emptyList(), Collections.emptyList());
+    }
+    protected Map<String, ElementSnapshot> getElementSnapshots(WebDriver driver, List<String> locators, List<String> attributeNames, List<String> cssPropertyNames){
+        List<ElementSnapshot> snapshots = DomBatchReader.readElements(driver, locators, attributeNames, cssPropertyNames);
+        Map<String, ElementSnapshot> snapshotByLocator = new LinkedHashMap<>();
+        for (int i = 0; i < locators.size(); i++) {
+            snapshotByLocator.put(locators.get(i), snapshots.get(i));
+        }
+        return snapshotByLocator;
     }
     protected int getListElementSize(WebDriver driver, String locator){
         return getListElement(driver, locator).size();
     }
     protected boolean isElementSelected(WebDriver driver, String locator){
-        return getElement(driver, locator).isSelected();
+        return readElement("isElementSelected", driver, locator, WebElement::isSelected);
     }
     protected void checkToCheckboxOrRadio(WebDriver driver, String locator){
         if (!isElementSelected(driver, locator)){
@@ -200,8 +285,9 @@ public class BasePage {
         }
     }
     protected void checkToCheckboxOrRadio(WebDriver driver, String locator, String...restParams){
-        if (!isElementSelected(driver, getDynamicLocator(locator, restParams))){
-            clickToElement(driver, getDynamicLocator(locator, restParams));
+        String dynamicLocator = getDynamicLocator(locator, restParams);
+        if (!isElementSelected(driver, dynamicLocator)){
+            clickToElement(driver, dynamicLocator);
         }
     }
     protected void uncheckToCheckbox(WebDriver driver, String locator) {
@@ -210,18 +296,17 @@ public class BasePage {
         }
     }
     protected boolean isElementDisplayed(WebDriver driver, String locator){
-        return getElement(driver, locator).isDisplayed();
+        return readElement("isElementDisplayed", driver, locator, WebElement::isDisplayed);
     }
     protected boolean isElementDisplayed(WebDriver driver, String locator, String...restParams){
-        return getElement(driver, getDynamicLocator(locator, restParams)).isDisplayed();
+        return isElementDisplayed(driver, getDynamicLocator(locator, restParams));
     }
     protected void setImplicitWait(WebDriver driver, long timeout){
         driver.manage().timeouts().implicitlyWait(Duration.ofSeconds(timeout));
     }
+    //Negative check: one findElements without waiting, returns as soon as the DOM is read
     protected boolean isElementUndisplayed(WebDriver driver, String locator){
-        setImplicitWait(driver, shortTimeout);
-        List<WebElement> elements = getListElement(driver, locator);
-        setImplicitWait(driver, longTimeout);
+        List<WebElement> elements = driver.findElements(getByLocator(locator));
         if (elements.size() > 0 && elements.get(0).isDisplayed()){
             //Element co tren UI va co trong DOM
             return false;
@@ -233,9 +318,7 @@ public class BasePage {
         }
     }
     protected boolean isElementUndisplayed(WebDriver driver, String locator, String...restParams){
-        setImplicitWait(driver, shortTimeout);
-        List<WebElement> elements = getListElement(driver, getDynamicLocator(locator, restParams));
-        setImplicitWait(driver, longTimeout);
+        List<WebElement> elements = driver.findElements(getByLocator(locator, restParams));
         if (elements.size() > 0 && elements.get(0).isDisplayed()){
             //Element co tren UI va co trong DOM
             return false;
@@ -247,58 +330,49 @@ public class BasePage {
         }
     }
     protected void switchToFrame(WebDriver driver, String locator){
-        driver.switchTo().frame(getElement(driver, locator));
+        WebElement frame = getElement(driver, locator);
+        driver.switchTo().frame(frame);
     }
     protected void switchToDefaultContent(WebDriver driver){
         driver.switchTo().defaultContent();
     }
     protected void clickToElementByJs(WebDriver driver, String locator){
-        ((JavascriptExecutor)driver).executeScript("arguments[0].click();", getElement(driver, locator));
+        actOnElement("clickToElementByJs", driver, locator, element -> ((JavascriptExecutor)driver).executeScript("arguments[0].click();", element));
         //sleepInSecond(3);
     }
     protected boolean isPageLoadedSuccess(WebDriver driver){
-        WebDriverWait explicitWait = new WebDriverWait(driver, Duration.ofSeconds(longTimeout));
-
-        //Điều kiện 1
-        JavascriptExecutor jsExecutor = (JavascriptExecutor) driver;
-        ExpectedCondition<Boolean> jQueryLoad = new ExpectedCondition<Boolean>() {
-            @Override
-            public Boolean apply(WebDriver driver) {
-                return (Boolean) jsExecutor.executeScript("return (window.jQuery != null) && (jQuery.active === 0);");
-            }
-        };
-
-        //Điều kiện 2
-        ExpectedCondition<Boolean> jsLoad = new ExpectedCondition<Boolean>() {
-            @Override
-            public Boolean apply(WebDriver driver) {
-                return jsExecutor.executeScript("return document.readyState").toString().equals("complete");
+        //One async script that returns once readyState is complete and network, animations and DOM are quiet
+        long start = ActionMetrics.ENABLED ? ActionMetrics.start() : 0;
+        try {
+            ReadinessProbe.waitForQuiet(driver, GlobalConstants.READINESS_QUIET_MILLIS, Duration.ofSeconds(longTimeout));
+            return true;
+        } finally {
+            if (ActionMetrics.ENABLED) {
+                ActionMetrics.recordWait("isPageLoadedSuccess", null, start);
             }
-        };
-        return explicitWait.until(jQueryLoad) && explicitWait.until(jsLoad);
+        }
     }
     protected void waitForElementVisible(WebDriver driver, String locator){
-        new WebDriverWait(driver, Duration.ofSeconds(longTimeout))
-                .until(ExpectedConditions.visibilityOfElementLocated(getByLocator(locator)));
+        cacheElement(driver, locator, waitFor("waitForElementVisible", driver, locator, ExpectedConditions.visibilityOfElementLocated(getByLocator(locator))));
     }
     protected void waitForElementPresence(WebDriver driver, String locator){
-        new WebDriverWait(driver, Duration.ofSeconds(longTimeout))
-                .until(ExpectedConditions.presenceOfElementLocated(getByLocator(locator)));
+        cacheElement(driver, locator, waitFor("waitForElementPresence", driver, locator, ExpectedConditions.presenceOfElementLocated(getByLocator(locator))));
     }
     protected void waitForListElementVisible(WebDriver driver, String locator){
-        new WebDriverWait(driver, Duration.ofSeconds(longTimeout)).until(ExpectedConditions.visibilityOfAllElementsLocatedBy(getByLocator(locator)));
+        waitFor("waitForListElementVisible", driver, locator, ExpectedConditions.visibilityOfAllElementsLocatedBy(getByLocator(locator)));
     }
     protected void waitForListElementVisible(WebDriver driver, String locator, String...restParams){
-        new WebDriverWait(driver, Duration.ofSeconds(longTimeout)).until(ExpectedConditions.visibilityOfAllElementsLocatedBy(getByLocator(getDynamicLocator(locator, restParams))));
+        waitForListElementVisible(driver, getDynamicLocator(locator, restParams));
     }
     protected void waitForElementClickable(WebDriver driver, String locator){
-        new WebDriverWait(driver, Duration.ofSeconds(longTimeout)).until(ExpectedConditions.elementToBeClickable(getByLocator(locator)));
+        cacheElement(driver, locator, waitFor("waitForElementClickable", driver, locator, ExpectedConditions.elementToBeClickable(getByLocator(locator))));
     }
     protected void waitForElementClickable(WebDriver driver, String locator, String...restParams){
-        new WebDriverWait(driver, Duration.ofSeconds(longTimeout)).until(ExpectedConditions.elementToBeClickable(getByLocator(getDynamicLocator(locator, restParams))));
+        waitForElementClickable(driver, getDynamicLocator(locator, restParams));
     }
     public void waitForElementInvisible(WebDriver driver, String locator) {
-        new WebDriverWait(driver, Duration.ofSeconds(longTimeout)).until(ExpectedConditions.invisibilityOfElementLocated(getByLocator(locator)));
+        elementCache.remove(locator);
+        waitFor("waitForElementInvisible", driver, locator, ExpectedConditions.invisibilityOfElementLocated(getByLocator(locator)));
     }
     protected void sleepInSecond(long timeout) {
         try {
@@ -309,7 +383,19 @@ public class BasePage {
         }
     }
 
+    private WaitEngine explicitWait(WebDriver driver) {
+        return WaitEngine.on(driver).withTimeout(longTimeout);
+    }
+
+    private static final int MAX_CACHED_ELEMENTS = 64;
+    private final Map<String, WebElement> elementCache = new LinkedHashMap<String, WebElement>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, WebElement> eldest) {
+            return size() > MAX_CACHED_ELEMENTS;
+        }
+    };
+    private WebDriver cachedDriver;
+    private long cachedNavigation;
     private long longTimeout = GlobalConstants.LONG_TIMEOUT;
-    private long shortTimeout = GlobalConstants.SHORT_TIMEOUT;
 }
 
@@ -1,20 +1,13 @@
 package commons;
 
 import java.io.File;
-import java.io.IOException;
-import java.time.Duration;
-import java.util.Random;
+import java.util.function.Predicate;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
-import org.openqa.selenium.Dimension;
-import org.openqa.selenium.Point;
 import org.openqa.selenium.WebDriver;
-import org.openqa.selenium.chrome.ChromeDriver;
-import org.openqa.selenium.edge.EdgeDriver;
-import org.openqa.selenium.firefox.FirefoxDriver;
-import org.openqa.selenium.safari.SafariDriver;
 import org.testng.Assert;
+import org.testng.ITestContext;
 import org.testng.Reporter;
 import org.testng.annotations.BeforeSuite;
 
@@ -27,44 +20,61 @@ public class BaseTest {
     //private String projectPath = System.getProperty("user.dir");
 
     protected final Logger log;
-    private WebDriver driver;
 
     protected BaseTest() {
         log = LogManager.getLogger(getClass());
     }
 
     public WebDriver getDriver() {
-        return driver;
+        return DriverManager.getDriver();
     }
 
 
     protected WebDriver getBrowserEnvironment(String browserName, String serverName) {
         BrowserList browser = BrowserList.valueOf(browserName.toUpperCase());
-        switch (browser) {
-            case CHROME:
-                driver = new ChromeDriver();
-                break;
-            case FIREFOX:
-                driver = new FirefoxDriver();
-                break;
-            case EDGE:
-                driver = new EdgeDriver();
-                break;
-            case SAFARI:
-                driver = new SafariDriver();
-                break;
-            default:
-                throw new RuntimeException("Browser name is not valid");
+        //Non-visual classes do not need a real browser: an in-process HtmlUnit session starts in milliseconds
+        if (GlobalConstants.NON_VISUAL_HTMLUNIT && getClass().isAnnotationPresent(NonVisual.class)) {
+            browser = BrowserList.HTMLUNIT;
         }
+        ServerList server = ServerList.valueOf(serverName.toUpperCase());
 
-        driver.manage().window().setPosition(new Point(0,0));
-        driver.manage().window().setSize(new Dimension(1920,1080));
-
-        driver.manage().timeouts().implicitlyWait(Duration.ofSeconds(GlobalConstants.LONG_TIMEOUT));
-
-        driver.get(getUrlByServerName(serverName));
+        DriverSession session = DriverPool.acquire(browser, server);
+        //Page objects keep this driver: it follows the session when a retry resets or replaces it
+        WebDriver driver = DriverManager.bindSession(session);
+        if (GlobalConstants.NETWORK_FILTER) {
+            getNetworkFilter();
+        }
+        String url = getUrlByServerName(serverName);
+        //A recycled session is already on the base URL after its reset
+        if (session.getUseCount() == 0 || !url.equals(session.getBaseUrl())) {
+            driver.get(url);
+        }
+        session.markUsed(url);
         return driver;
     }
+    //Request blocking/stubbing for this thread's session, installed before the first page load with -Dnetwork.filter=true
+    //or on first use, e.g. getNetworkFilter().stub("*/api/cart*", 200, "application/json", "{}")
+    //Without DevTools (Firefox/Safari/HtmlUnit) the filter is not installed and its block/stub calls throw
+    protected NetworkFilter getNetworkFilter() {
+        DriverSession session = DriverManager.getSession();
+        if (session == null) {
+            throw new IllegalStateException("No browser session on this thread: call getBrowserEnvironment first");
+        }
+        if (session.getNetworkFilter() == null) {
+            NetworkFilter filter = NetworkFilter.fromConfiguration();
+            if (!filter.install(session.getDriver())) {
+                return filter;
+            }
+            session.setNetworkFilter(filter);
+        }
+        return session.getNetworkFilter();
+    }
+    //Log in once per role and server, later classes (and runs) get the saved cookies/storage injected instead
+    //loginFlow drives the UI login on the current page, isLoggedIn checks the page (e.g. "My account" link displayed)
+    protected void loginWithCachedState(WebDriver driver, String role, Runnable loginFlow, Predicate<WebDriver> isLoggedIn) {
+        DriverSession session = DriverManager.getSession();
+        SessionStateCache.login(driver, role, session.getServer(), session.getBaseUrl(), loginFlow, isLoggedIn);
+    }
     private String getUrlByServerName(String serverName){
         ServerList server = ServerList.valueOf(serverName.toUpperCase());
         switch (server) {
@@ -80,6 +90,9 @@ public class BaseTest {
             case LIVE:
                 serverName = "https://shopee.vn/";
                 break;
+            case LOCAL:
+                serverName = GlobalConstants.LOCAL_URL != null ? GlobalConstants.LOCAL_URL : FixtureServer.getShared().getUrl();
+                break;
             default:
                 throw new IllegalArgumentException("Unexpected value: " + serverName);
         }
@@ -87,63 +100,27 @@ public class BaseTest {
     }
 
 
+    //Unique per call, across parallel threads and forked JVMs (see TestDataService)
     protected String getEmailRandom() {
-        Random rand = new Random();
-        return "automation" + rand.nextInt(9999) + "@gmail.com";
+        return TestDataService.uniqueEmail();
     }
 
     protected int getNumberRandom() {
-        Random rand = new Random();
-        return rand.nextInt(9999);
+        return TestDataService.randomInt(9999);
     }
 
     protected void quitBrowserDriver() {
-        String cmd = null;
-        try {
-            String osName = GlobalConstants.OS_NAME.toLowerCase();
-            log.info("OS name = " + osName);
-
-            String driverInstanceName = driver.toString().toLowerCase();
-            log.info("Driver instance name = " + driverInstanceName);
-
-            String browserDriverName = null;
-
-            if (driverInstanceName.contains("chrome")) {
-                browserDriverName = "chromedriver";
-            } else if (driverInstanceName.contains("internetexplorer")) {
-                browserDriverName = "IEDriverServer";
-            } else if (driverInstanceName.contains("firefox")) {
-                browserDriverName = "geckodriver";
-            } else if (driverInstanceName.contains("edge")) {
-                browserDriverName = "msedgedriver";
-            } else if (driverInstanceName.contains("opera")) {
-                browserDriverName = "operadriver";
-            } else {
-                browserDriverName = "safaridriver";
-            }
-
-            if (osName.contains("window")) {
-                cmd = "taskkill /F /FI \"IMAGENAME eq " + browserDriverName + "*\"";
-            } else {
-                cmd = "pkill " + browserDriverName;
-            }
-
-            if (driver != null) {
-                driver.manage().deleteAllCookies();
-                driver.quit();
-            }
-        } catch (Exception e) {
-            log.info(e.getMessage());
-        } finally {
-            try {
-                Process process = Runtime.getRuntime().exec(cmd);
-                process.waitFor();
-            } catch (IOException e) {
-                e.printStackTrace();
-            } catch (InterruptedException e) {
-                e.printStackTrace();
-            }
+        DriverSession session = DriverManager.getSession();
+        if (session == null) {
+            return;
+        }
+        log.info("Releasing session " + session);
+        if (session.getNetworkFilter() != null) {
+            log.info(session.getNetworkFilter().getMetrics());
         }
+        DriverManager.removeSession();
+        //Recycles or quits the session; only the driver process owned by this session is stopped
+        DriverPool.release(session);
     }
 
     protected boolean verifyTrue(boolean condition) {
@@ -191,12 +168,25 @@ public class BaseTest {
 
     @BeforeSuite
     public void deleteFileInReport() {
-        // Remove all file in ReportNG screenshot (image)
-        deleteAllFileInFolder("reportNGImage");
+        //A shard only cleans its own Allure folder: ShardRunner cleans the shared ones and the shard logs before the start
+        if (GlobalConstants.SHARD_INDEX < 0) {
+            // Remove all file in ReportNG screenshot (image)
+            deleteAllFileInFolder("reportNGImage");
+        }
 
         // Remove all file in Allure attachment (json file)
-        deleteAllFileInFolder("allure-json");
-        deleteAllFileInFolder("logs");
+        deleteAllFileInFolder(GlobalConstants.ALLURE_RESULTS_DIR);
+        if (GlobalConstants.SHARD_INDEX < 0) {
+            deleteAllFileInFolder(GlobalConstants.LOGS_DIR);
+        }
+    }
+
+    //Driver binaries of every browser in the suite, resolved in parallel before the first test needs one
+    @BeforeSuite
+    public void resolveDrivers(ITestContext context) {
+        if (GlobalConstants.DRIVER_CACHE) {
+            DriverBinaryCache.preflight(DriverBinaryCache.getConfiguredBrowsers(context.getSuite().getXmlSuite()));
+        }
     }
 
     public void deleteAllFileInFolder(String folderName) {
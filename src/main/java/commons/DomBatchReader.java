@@ -0,0 +1,128 @@
+package commons;
+
+import org.openqa.selenium.JavascriptExecutor;
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.WebElement;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class DomBatchReader {
+    //Reads text, state, attributes and css of many elements with one executeScript call
+    //instead of one driver round trip per element per property
+
+    private static final String READ_SCRIPT =
+            "var queries = arguments[0], attributeNames = arguments[1], cssNames = arguments[2];" +
+            "function find(strategy, value, all) {" +
+            "  var found = [];" +
+            "  switch (strategy) {" +
+            "    case 'XPATH':" +
+            "      var result = document.evaluate(value, document, null, XPathResult.ORDERED_NODE_SNAPSHOT_TYPE, null);" +
+            "      for (var i = 0; i < result.snapshotLength && (all || i < 1); i++) { found.push(result.snapshotItem(i)); }" +
+            "      return found;" +
+            "    case 'CSS': found = document.querySelectorAll(value); break;" +
+            "    case 'ID': found = document.querySelectorAll('[id=\"' + CSS.escape(value) + '\"]'); break;" +
+            "    case 'NAME': found = document.getElementsByName(value); break;" +
+            "    case 'CLASS': found = document.getElementsByClassName(value); break;" +
+            "    case 'TAG_NAME': found = document.getElementsByTagName(value); break;" +
+            "  }" +
+            "  found = Array.prototype.slice.call(found);" +
+            "  return all ? found : found.slice(0, 1);" +
+            "}" +
+            "function isDisplayed(element, style) {" +
+            "  if (!element.isConnected || element.getClientRects().length === 0) { return false; }" +
+            "  return style.visibility !== 'hidden' && style.visibility !== 'collapse' && style.opacity !== '0';" +
+            "}" +
+            "function read(element) {" +
+            "  var style = window.getComputedStyle(element);" +
+            "  var displayed = isDisplayed(element, style);" +
+            "  var snapshot = { text: displayed ? (element.innerText || '').trim() : ''," +
+            "    displayed: displayed, selected: !!(element.selected || element.checked), enabled: !element.disabled," +
+            "    tagName: element.tagName.toLowerCase(), attributes: {}, css: {} };" +
+            "  attributeNames.forEach(function (name) {" +
+            "    var property = element[name];" +
+            "    var simple = property !== undefined && property !== null && typeof property !== 'object' && typeof property !== 'function';" +
+            "    snapshot.attributes[name] = simple ? String(property) : element.getAttribute(name);" +
+            "  });" +
+            "  cssNames.forEach(function (name) { snapshot.css[name] = style.getPropertyValue(name); });" +
+            "  return snapshot;" +
+            "}" +
+            "return queries.map(function (query) { return find(query[0], query[1], query[2]).map(read); });";
+
+    private static final String READ_TEXTS_SCRIPT =
+            "return Array.prototype.map.call(arguments[0], function (element) { return (element.innerText || '').trim(); });";
+
+    private DomBatchReader() {
+    }
+
+    //First match of every locator, in the same order; a missing element gives a not-present snapshot
+    public static List<ElementSnapshot> readElements(WebDriver driver, List<String> locators,
+                                                     List<String> attributeNames, List<String> cssPropertyNames) {
+        List<List<ElementSnapshot>> results = read(driver, locators, false, attributeNames, cssPropertyNames);
+        List<ElementSnapshot> snapshots = new ArrayList<>(results.size());
+        for (List<ElementSnapshot> matches : results) {
+            snapshots.add(matches.isEmpty() ? ElementSnapshot.notPresent() : matches.get(0));
+        }
+        return snapshots;
+    }
+
+    //Every match of a list locator
+    public static List<ElementSnapshot> readList(WebDriver driver, String locator,
+                                                 List<String> attributeNames, List<String> cssPropertyNames) {
+        return read(driver, Collections.singletonList(locator), true, attributeNames, cssPropertyNames).get(0);
+    }
+
+    //Visible text of already located elements
+    @SuppressWarnings("unchecked")
+    public static List<String> readTexts(WebDriver driver, List<WebElement> elements) {
+        return (List<String>) ((JavascriptExecutor) driver).executeScript(READ_TEXTS_SCRIPT, elements);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<List<ElementSnapshot>> read(WebDriver driver, List<String> locators, boolean all,
+                                                    List<String> attributeNames, List<String> cssPropertyNames) {
+        List<List<Object>> queries = new ArrayList<>(locators.size());
+        for (String locator : locators) {
+            LocatorCache.Locator compiled = LocatorCache.compile(locator);
+            queries.add(List.of(compiled.getStrategy().name(), compiled.getValue(), all));
+        }
+        List<List<Map<String, Object>>> raw = (List<List<Map<String, Object>>>) ((JavascriptExecutor) driver)
+                .executeScript(READ_SCRIPT, queries, attributeNames, cssPropertyNames);
+
+        List<List<ElementSnapshot>> results = new ArrayList<>(raw.size());
+        for (List<Map<String, Object>> matches : raw) {
+            List<ElementSnapshot> snapshots = new ArrayList<>(matches.size());
+            for (Map<String, Object> values : matches) {
+                snapshots.add(toSnapshot(values));
+            }
+            results.add(snapshots);
+        }
+        return results;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static ElementSnapshot toSnapshot(Map<String, Object> values) {
+        return new ElementSnapshot(true,
+                (String) values.get("text"),
+                Boolean.TRUE.equals(values.get("displayed")),
+                Boolean.TRUE.equals(values.get("selected")),
+                Boolean.TRUE.equals(values.get("enabled")),
+                (String) values.get("tagName"),
+                toStringMap((Map<String, Object>) values.get("attributes")),
+                toStringMap((Map<String, Object>) values.get("css")));
+    }
+
+    private static Map<String, String> toStringMap(Map<String, Object> values) {
+        if (values == null || values.isEmpty()) {
+            return Collections.emptyMap();
+        }
+        Map<String, String> strings = new HashMap<>(values.size() * 2);
+        for (Map.Entry<String, Object> entry : values.entrySet()) {
+            strings.put(entry.getKey(), entry.getValue() == null ? null : String.valueOf(entry.getValue()));
+        }
+        return strings;
+    }
+}
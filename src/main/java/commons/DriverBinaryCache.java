@@ -0,0 +1,251 @@
+package commons;
+
+import io.github.bonigarcia.wdm.WebDriverManager;
+import io.github.bonigarcia.wdm.config.Config;
+import io.github.bonigarcia.wdm.config.DriverManagerType;
+import io.github.bonigarcia.wdm.online.HttpClient;
+import io.github.bonigarcia.wdm.versions.VersionDetector;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.openqa.selenium.chrome.ChromeDriverService;
+import org.openqa.selenium.edge.EdgeDriverService;
+import org.openqa.selenium.firefox.GeckoDriverService;
+import org.testng.xml.XmlSuite;
+import org.testng.xml.XmlTest;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+public class DriverBinaryCache {
+    //Driver binaries in a local folder with a manifest "<browser>.<browser major version>=<driver path>":
+    //once a browser version has been seen, its driver is found without any network access (-Ddriver.cache.offline=true
+    //never downloads). New browser versions are downloaded once through WebDriverManager and added to the manifest.
+    //The resolved path goes into Selenium's webdriver.*.driver property, so Selenium Manager is not asked again.
+    //Only a driver recorded for the detected browser major is used: with an unknown version or no entry for it
+    //(offline, failed download) nothing is set and Selenium Manager resolves the driver as without this cache.
+
+    private static final Logger log = LogManager.getLogger(DriverBinaryCache.class);
+    private static final String MANIFEST = "manifest.properties";
+    private static final Map<BrowserList, Optional<Path>> resolved = new ConcurrentHashMap<>();
+
+    private DriverBinaryCache() {
+    }
+
+    //Resolve the drivers of all browsers at once, e.g. at suite start, so no test waits for a download
+    public static void preflight(Collection<BrowserList> browsers) {
+        List<BrowserList> needed = new ArrayList<>();
+        for (BrowserList browser : browsers) {
+            if (getDriverType(browser) != null && !resolved.containsKey(browser)) {
+                needed.add(browser);
+            }
+        }
+        if (needed.isEmpty()) {
+            return;
+        }
+        long start = System.currentTimeMillis();
+        ExecutorService executor = Executors.newFixedThreadPool(needed.size(), runnable -> {
+            Thread thread = new Thread(runnable, "driver-preflight");
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            List<Future<Optional<Path>>> futures = new ArrayList<>();
+            for (BrowserList browser : needed) {
+                futures.add(executor.submit(() -> resolve(browser)));
+            }
+            long deadline = start + TimeUnit.SECONDS.toMillis(GlobalConstants.DRIVER_PREFLIGHT_TIMEOUT_SECONDS);
+            for (int i = 0; i < futures.size(); i++) {
+                try {
+                    futures.get(i).get(Math.max(0, deadline - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+                } catch (TimeoutException e) {
+                    log.warn("Driver preflight for " + needed.get(i) + " timed out, the first session resolves it");
+                } catch (Exception e) {
+                    log.warn("Driver preflight for " + needed.get(i) + " failed: " + e);
+                }
+            }
+        } catch (RuntimeException e) {
+            log.warn("Driver preflight failed: " + e);
+        } finally {
+            executor.shutdownNow();
+        }
+        log.info("Driver preflight for " + needed + " took " + (System.currentTimeMillis() - start) + " ms");
+    }
+
+    //Driver binary for the installed browser, empty when Selenium Manager has to find it; resolved once per JVM
+    public static Optional<Path> resolve(BrowserList browser) {
+        if (getDriverType(browser) == null) {
+            return Optional.empty();
+        }
+        return resolved.computeIfAbsent(browser, DriverBinaryCache::lookup);
+    }
+
+    //Browsers named by the "browser" parameters of a suite
+    public static Set<BrowserList> getConfiguredBrowsers(XmlSuite suite) {
+        Set<BrowserList> browsers = EnumSet.noneOf(BrowserList.class);
+        addBrowser(browsers, suite.getParameter("browser"));
+        for (XmlTest test : suite.getTests()) {
+            addBrowser(browsers, test.getParameter("browser"));
+        }
+        return browsers;
+    }
+
+    private static void addBrowser(Set<BrowserList> browsers, String name) {
+        if (name == null) {
+            return;
+        }
+        try {
+            browsers.add(BrowserList.valueOf(name.trim().toUpperCase()));
+        } catch (IllegalArgumentException e) {
+            //Not a browser of this framework, the test fails on it later with a clear message
+        }
+    }
+
+    private static DriverManagerType getDriverType(BrowserList browser) {
+        switch (browser) {
+            case CHROME:
+                return DriverManagerType.CHROME;
+            case FIREFOX:
+                return DriverManagerType.FIREFOX;
+            case EDGE:
+                return DriverManagerType.EDGE;
+            default:
+                //Safari ships its driver with the OS, HtmlUnit runs in-process
+                return null;
+        }
+    }
+
+    private static String getDriverProperty(BrowserList browser) {
+        switch (browser) {
+            case CHROME:
+                return ChromeDriverService.CHROME_DRIVER_EXE_PROPERTY;
+            case FIREFOX:
+                return GeckoDriverService.GECKO_DRIVER_EXE_PROPERTY;
+            default:
+                return EdgeDriverService.EDGE_DRIVER_EXE_PROPERTY;
+        }
+    }
+
+    private static Optional<Path> lookup(BrowserList browser) {
+        long start = System.currentTimeMillis();
+        DriverManagerType type = getDriverType(browser);
+        String major = detectBrowserMajorVersion(type);
+        if (major == null) {
+            //No cached driver can be matched to the browser, and nothing may be recorded without a version
+            log.warn("Browser version of " + browser + " unknown, Selenium Manager resolves the driver");
+            return Optional.empty();
+        }
+        String key = browser.name().toLowerCase() + "." + major;
+
+        Path driver = getManifestEntry(key);
+        String source = "manifest";
+        if (driver == null && !GlobalConstants.DRIVER_CACHE_OFFLINE) {
+            driver = download(type, key);
+            source = "download";
+        }
+        if (driver == null) {
+            //A driver of another major would fail every session with "session not created"
+            log.warn("No cached driver for " + browser + " " + major + ", Selenium Manager resolves it");
+            return Optional.empty();
+        }
+        System.setProperty(getDriverProperty(browser), driver.toString());
+        log.info("Driver for " + browser + " " + major + ": " + driver + " (" + source + ", "
+                + (System.currentTimeMillis() - start) + " ms)");
+        return Optional.of(driver);
+    }
+
+    //Runs the browser's version command locally, no network; null when the browser or its version is not found
+    private static String detectBrowserMajorVersion(DriverManagerType type) {
+        try {
+            Config config = new Config();
+            VersionDetector detector = new VersionDetector(config, new HttpClient(config));
+            return detector.getBrowserVersionFromTheShell(type.getBrowserNameLowerCase())
+                    .map(VersionDetector::getMajorVersion).filter(major -> major.matches("\\d+")).orElse(null);
+        } catch (RuntimeException e) {
+            return null;
+        }
+    }
+
+    private static Path download(DriverManagerType type, String key) {
+        try {
+            WebDriverManager manager = WebDriverManager.getInstance(type)
+                    .cachePath(GlobalConstants.DRIVER_CACHE_DIR)
+                    .avoidExport()
+                    .avoidOutputTree();
+            manager.setup();
+            Path driver = Paths.get(manager.getDownloadedDriverPath()).toAbsolutePath();
+            putManifestEntry(key, driver, manager.getDownloadedDriverVersion());
+            return driver;
+        } catch (RuntimeException e) {
+            log.warn("Driver download for " + key + " failed: " + e.getMessage());
+            return null;
+        }
+    }
+
+    private static Path getManifestEntry(String key) {
+        String path = readManifest().getProperty(key);
+        if (path == null || !Files.isRegularFile(Paths.get(path))) {
+            return null;
+        }
+        return Paths.get(path);
+    }
+
+    private static Properties readManifest() {
+        Properties manifest = new Properties();
+        Path file = Paths.get(GlobalConstants.DRIVER_CACHE_DIR, MANIFEST);
+        if (Files.isRegularFile(file)) {
+            try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+                manifest.load(reader);
+            } catch (IOException e) {
+                log.warn("Cannot read driver manifest " + file + ": " + e.getMessage());
+            }
+        }
+        return manifest;
+    }
+
+    //Preflight threads and parallel shards may add entries at the same time: lock, re-read, add, write + rename
+    private static synchronized void putManifestEntry(String key, Path driver, String driverVersion) {
+        Path directory = Paths.get(GlobalConstants.DRIVER_CACHE_DIR);
+        Path file = directory.resolve(MANIFEST);
+        try {
+            Files.createDirectories(directory);
+            try (FileChannel channel = FileChannel.open(directory.resolve(MANIFEST + ".lock"), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+                 FileLock lock = channel.lock()) {
+                Properties manifest = readManifest();
+                manifest.setProperty(key, driver.toString());
+                if (driverVersion != null) {
+                    manifest.setProperty(key + ".driverVersion", driverVersion);
+                }
+                Path temp = Files.createTempFile(directory, "manifest", ".tmp");
+                try (Writer writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+                    manifest.store(writer, "Driver binary per browser major version, used by DriverBinaryCache");
+                }
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            }
+        } catch (IOException e) {
+            log.warn("Cannot write driver manifest " + file + ": " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package commons;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.openqa.selenium.Dimension;
+import org.openqa.selenium.Point;
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.chrome.ChromeDriver;
+import org.openqa.selenium.chrome.ChromeDriverService;
+import org.openqa.selenium.edge.EdgeDriver;
+import org.openqa.selenium.edge.EdgeDriverService;
+import org.openqa.selenium.firefox.FirefoxDriver;
+import org.openqa.selenium.firefox.GeckoDriverService;
+import org.openqa.selenium.htmlunit.HtmlUnitDriver;
+import org.openqa.selenium.remote.service.DriverService;
+import org.openqa.selenium.safari.SafariDriver;
+import org.openqa.selenium.safari.SafariDriverService;
+
+import java.nio.file.Path;
+import java.util.stream.Stream;
+
+public class DriverFactory {
+    //Launch a new browser session, only DriverPool should call it
+    //Each session gets its own DriverService so the framework can stop exactly the driver process it started
+    //Implicit wait stays at 0: BasePage waits through WaitEngine
+    //Options and window size come from the LaunchProfile, so the browser starts the way the run needs it
+
+    private static final Logger log = LogManager.getLogger(DriverFactory.class);
+
+    private DriverFactory() {
+    }
+
+    static DriverSession createSession(BrowserList browser, ServerList server) {
+        LaunchProfile profile = LaunchProfile.getActive();
+        //Done once per browser and JVM, normally already by the suite preflight
+        if (GlobalConstants.DRIVER_CACHE) {
+            DriverBinaryCache.resolve(browser);
+        }
+        long start = System.nanoTime();
+        WebDriver driver;
+        DriverService service;
+        //Deleted by DriverSession.quit, or right here if the browser does not start
+        Path profileCopy = browser == BrowserList.CHROME || browser == BrowserList.EDGE ? LaunchProfile.copySeedProfile() : null;
+        try {
+            switch (browser) {
+                case CHROME:
+                    service = ChromeDriverService.createDefaultService();
+                    driver = new ChromeDriver((ChromeDriverService) service, profile.chromeOptions(profileCopy));
+                    break;
+                case FIREFOX:
+                    service = GeckoDriverService.createDefaultService();
+                    driver = new FirefoxDriver((GeckoDriverService) service, profile.firefoxOptions());
+                    break;
+                case EDGE:
+                    service = EdgeDriverService.createDefaultService();
+                    driver = new EdgeDriver((EdgeDriverService) service, profile.edgeOptions(profileCopy));
+                    break;
+                case SAFARI:
+                    service = SafariDriverService.createDefaultService();
+                    driver = new SafariDriver((SafariDriverService) service);
+                    break;
+                case HTMLUNIT:
+                    //In-process, no driver binary and no window
+                    service = null;
+                    driver = new HtmlUnitDriver(GlobalConstants.HTMLUNIT_JAVASCRIPT);
+                    break;
+                default:
+                    throw new RuntimeException("Browser name is not valid");
+            }
+        } catch (RuntimeException e) {
+            LaunchProfile.deleteProfileCopy(profileCopy);
+            throw e;
+        }
+
+        if (ActionMetrics.ENABLED) {
+            driver = ActionMetrics.countRoundTrips(driver);
+        }
+        DriverSession session = new DriverSession(browser, server, driver, service, profile, findDriverPid(service), profileCopy);
+        //Safari takes no launch arguments: its window is placed after the start
+        if (browser == BrowserList.SAFARI) {
+            try {
+                driver.manage().window().setPosition(new Point(0,0));
+                driver.manage().window().setSize(new Dimension(GlobalConstants.WINDOW_WIDTH, GlobalConstants.WINDOW_HEIGHT));
+            } catch (RuntimeException e) {
+                session.quit();
+                throw e;
+            }
+        }
+        long startupNanos = System.nanoTime() - start;
+        long rssBytes = LaunchMetrics.getProcessTreeRss(session.getDriverPid());
+        LaunchMetrics.recordStart(browser, profile, startupNanos, rssBytes);
+        log.info("Launched " + browser + " (" + profile + ") in " + startupNanos / 1_000_000 + " ms, "
+                + LaunchMetrics.toMegabytes(rssBytes) + " MB resident");
+        return session;
+    }
+
+    //The driver process this service started: the JVM's child listening on the service's port
+    private static long findDriverPid(DriverService service) {
+        if (service == null || service.getUrl() == null) {
+            return -1;
+        }
+        String port = String.valueOf(service.getUrl().getPort());
+        try (Stream<ProcessHandle> children = ProcessHandle.current().children()) {
+            return children.filter(child -> {
+                String[] arguments = child.info().arguments().orElse(new String[0]);
+                for (int i = 0; i < arguments.length; i++) {
+                    if (arguments[i].equals("--port=" + port)
+                            || (arguments[i].equals("--port") && i + 1 < arguments.length && arguments[i + 1].equals(port))) {
+                        return true;
+                    }
+                }
+                return false;
+            }).mapToLong(ProcessHandle::pid).findFirst().orElse(-1);
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package commons;
+
+import org.openqa.selenium.WebDriver;
+
+public class DriverManager {
+    //Per-thread driver registry: each TestNG worker thread only sees its own session
+
+    private static final ThreadLocal<DriverSession> currentSession = new ThreadLocal<>();
+    //SessionDriver handed to the test class running on this thread, follows setSession
+    private static final ThreadLocal<WebDriver> currentHandle = new ThreadLocal<>();
+
+    private DriverManager() {
+    }
+
+    public static WebDriver getDriver() {
+        DriverSession session = currentSession.get();
+        return session == null ? null : session.getDriver();
+    }
+
+    public static DriverSession getSession() {
+        return currentSession.get();
+    }
+
+    public static void setSession(DriverSession session) {
+        currentSession.set(session);
+        WebDriver handle = currentHandle.get();
+        if (handle != null) {
+            SessionDriver.follow(handle, session);
+        }
+    }
+
+    //Binds the session to this thread and returns a new SessionDriver for the test class
+    public static WebDriver bindSession(DriverSession session) {
+        WebDriver handle = SessionDriver.create(session);
+        currentSession.set(session);
+        currentHandle.set(handle);
+        return handle;
+    }
+
+    public static void removeSession() {
+        WebDriver handle = currentHandle.get();
+        if (handle != null) {
+            SessionDriver.follow(handle, null);
+        }
+        currentSession.remove();
+        currentHandle.remove();
+    }
+}
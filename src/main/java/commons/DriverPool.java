@@ -0,0 +1,179 @@
+package commons;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.Semaphore;
+
+public class DriverPool {
+    //Bounded pool of browser sessions keyed by BrowserList + ServerList
+    //Every live session (busy or idle) holds one slot, so at most BROWSER_SLOTS browsers run at the same time
+
+    private static final Logger log = LogManager.getLogger(DriverPool.class);
+    private static final Semaphore slots = new Semaphore(GlobalConstants.BROWSER_SLOTS, true);
+    private static final Map<String, Deque<DriverSession>> idleSessions = new ConcurrentHashMap<>();
+    private static final Set<DriverSession> liveSessions = ConcurrentHashMap.newKeySet();
+
+    static {
+        Runtime.getRuntime().addShutdownHook(new Thread(DriverPool::shutdown, "driver-pool-shutdown"));
+    }
+
+    private DriverPool() {
+    }
+
+    public static DriverSession acquire(BrowserList browser, ServerList server) {
+        DriverSession session = idleSessions(getPoolKey(browser, server)).pollFirst();
+        if (session != null) {
+            return session;
+        }
+
+        if (!slots.tryAcquire()) {
+            //Pool is full: take over the slot of a warm session for another browser/server, else wait for a free one
+            DriverSession evicted = pollAnyIdleSession();
+            if (evicted != null) {
+                liveSessions.remove(evicted);
+                evicted.quit();
+            } else {
+                acquireSlot();
+            }
+        }
+
+        try {
+            session = DriverFactory.createSession(browser, server);
+        } catch (RuntimeException e) {
+            slots.release();
+            throw e;
+        }
+        liveSessions.add(session);
+        log.info("Started session " + session + " (" + liveSessions.size() + "/" + GlobalConstants.BROWSER_SLOTS + " slots in use)");
+        return session;
+    }
+
+    //Give a session back when a test class is done with it
+    //In recycle mode a healthy session is reset and kept warm, otherwise it is quit
+    public static void release(DriverSession session) {
+        if (!liveSessions.contains(session)) {
+            return;
+        }
+        if (!GlobalConstants.SESSION_RECYCLE) {
+            discard(session);
+            return;
+        }
+        if (session.getUseCount() >= GlobalConstants.SESSION_MAX_USES) {
+            log.info("Retiring session " + session + " after " + session.getUseCount() + " uses");
+            discard(session);
+            return;
+        }
+        if (!session.isHealthy()) {
+            log.info("Retiring unhealthy session " + session);
+            discard(session);
+            return;
+        }
+        try {
+            session.reset();
+        } catch (Exception e) {
+            log.info("Retiring session " + session + ", reset failed: " + e.getMessage());
+            discard(session);
+            return;
+        }
+        idleSessions(session.getPoolKey()).offerFirst(session);
+    }
+
+    //Quit the session and free its slot
+    public static void discard(DriverSession session) {
+        if (!liveSessions.remove(session)) {
+            return;
+        }
+        idleSessions(session.getPoolKey()).remove(session);
+        try {
+            session.quit();
+        } finally {
+            slots.release();
+        }
+    }
+
+    //Replace a broken session with a new one for the same browser/server, on the same base URL
+    //The network filter (with the stubs of the test class) moves to the new session
+    public static DriverSession renew(DriverSession session) {
+        NetworkFilter filter = session.getNetworkFilter();
+        discard(session);
+        DriverSession fresh = acquire(session.getBrowser(), session.getServer());
+        if (filter != null && filter.install(fresh.getDriver())) {
+            fresh.setNetworkFilter(filter);
+        }
+        if (session.getBaseUrl() != null) {
+            fresh.getDriver().get(session.getBaseUrl());
+            fresh.markUsed(session.getBaseUrl());
+        }
+        return fresh;
+    }
+
+    //Clean session for a retry: the same session reset when it is healthy, a new one otherwise
+    public static DriverSession refresh(DriverSession session) {
+        if (session.isHealthy()) {
+            try {
+                session.clean();
+                return session;
+            } catch (Exception e) {
+                log.info("Renewing session " + session + ", reset failed: " + e.getMessage());
+            }
+        }
+        return renew(session);
+    }
+
+    //Start sessions up front so the first tests do not pay the browser startup time
+    public static void warmUp(BrowserList browser, ServerList server, int count) {
+        List<CompletableFuture<DriverSession>> starting = new ArrayList<>();
+        for (int i = 0; i < Math.min(count, GlobalConstants.BROWSER_SLOTS); i++) {
+            starting.add(CompletableFuture.supplyAsync(() -> acquire(browser, server)));
+        }
+        for (CompletableFuture<DriverSession> future : starting) {
+            idleSessions(getPoolKey(browser, server)).offerFirst(future.join());
+        }
+    }
+
+    public static int getLiveSessionCount() {
+        return liveSessions.size();
+    }
+
+    public static void shutdown() {
+        for (DriverSession session : new ArrayList<>(liveSessions)) {
+            discard(session);
+        }
+    }
+
+    static String getPoolKey(BrowserList browser, ServerList server) {
+        return browser.name() + "@" + server.name();
+    }
+
+    private static Deque<DriverSession> idleSessions(String poolKey) {
+        return idleSessions.computeIfAbsent(poolKey, key -> new ConcurrentLinkedDeque<>());
+    }
+
+    private static DriverSession pollAnyIdleSession() {
+        for (Deque<DriverSession> sessions : idleSessions.values()) {
+            DriverSession session = sessions.pollLast();
+            if (session != null) {
+                return session;
+            }
+        }
+        return null;
+    }
+
+    private static void acquireSlot() {
+        try {
+            slots.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while waiting for a free browser slot", e);
+        }
+    }
+}
@@ -0,0 +1,173 @@
+package commons;
+
+import org.openqa.selenium.JavascriptExecutor;
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.WrapsDriver;
+import org.openqa.selenium.chromium.ChromiumDriver;
+import org.openqa.selenium.remote.service.DriverService;
+
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.Set;
+
+public class DriverSession {
+    //One browser session owned by the framework, keyed by browser + server in DriverPool
+
+    private static final String CLEAR_STORAGE_SCRIPT =
+            "try { window.localStorage.clear(); } catch (e) {}" +
+            "try { window.sessionStorage.clear(); } catch (e) {}";
+
+    private final BrowserList browser;
+    private final ServerList server;
+    private final WebDriver driver;
+    private final DriverService service;
+    private final LaunchProfile launchProfile;
+    private final long driverPid;
+    private final Path profileCopy;
+    private int useCount;
+    private String baseUrl;
+    private NetworkFilter networkFilter;
+
+    DriverSession(BrowserList browser, ServerList server, WebDriver driver, DriverService service, LaunchProfile launchProfile, long driverPid, Path profileCopy) {
+        this.browser = browser;
+        this.server = server;
+        this.driver = driver;
+        this.service = service;
+        this.launchProfile = launchProfile;
+        this.driverPid = driverPid;
+        this.profileCopy = profileCopy;
+    }
+
+    public BrowserList getBrowser() {
+        return browser;
+    }
+
+    public ServerList getServer() {
+        return server;
+    }
+
+    public WebDriver getDriver() {
+        return driver;
+    }
+
+    public LaunchProfile getLaunchProfile() {
+        return launchProfile;
+    }
+
+    //Driver process of this session, -1 for in-process drivers or when it could not be found
+    public long getDriverPid() {
+        return driverPid;
+    }
+
+    public int getUseCount() {
+        return useCount;
+    }
+
+    public String getBaseUrl() {
+        return baseUrl;
+    }
+
+    public NetworkFilter getNetworkFilter() {
+        return networkFilter;
+    }
+
+    void setNetworkFilter(NetworkFilter networkFilter) {
+        this.networkFilter = networkFilter;
+    }
+
+    void markUsed(String baseUrl) {
+        this.baseUrl = baseUrl;
+        useCount++;
+    }
+
+    String getPoolKey() {
+        return DriverPool.getPoolKey(browser, server);
+    }
+
+    //One cheap round trip: a crashed browser or a deleted session fails here
+    boolean isHealthy() {
+        try {
+            driver.getWindowHandle();
+            return true;
+        } catch (Exception e) {
+            return false;
+        }
+    }
+
+    //Bring the session back to a clean state for the next test class
+    void reset() {
+        //Blocks and stubs added by the previous test class must not leak into the next one
+        closeNetworkFilter();
+        clean();
+    }
+
+    //One window, no storage or cookies, on the base URL; the network filter stays (retry within the same class)
+    void clean() {
+        //Page objects holding this session must not reuse elements of the pages closed or reloaded here
+        WindowRegistry.of(driver).markNavigation();
+        Set<String> handles = driver.getWindowHandles();
+        String keep = handles.iterator().next();
+        for (String handle : handles) {
+            if (!handle.equals(keep)) {
+                driver.switchTo().window(handle);
+                driver.close();
+            }
+        }
+        driver.switchTo().window(keep);
+
+        //Storage and deleteAllCookies are per origin: clear them on the base site, wherever the last class ended
+        if (baseUrl != null) {
+            driver.get(baseUrl);
+        }
+        try {
+            ((JavascriptExecutor) driver).executeScript(CLEAR_STORAGE_SCRIPT);
+        } catch (UnsupportedOperationException e) {
+            //HtmlUnit with JavaScript off: no script ran, so nothing is in storage
+        }
+        driver.manage().deleteAllCookies();
+        //Chrome/Edge: cookies of every other domain too
+        WebDriver target = driver instanceof WrapsDriver ? ((WrapsDriver) driver).getWrappedDriver() : driver;
+        if (target instanceof ChromiumDriver) {
+            try {
+                ((ChromiumDriver) target).executeCdpCommand("Network.clearBrowserCookies", Collections.emptyMap());
+            } catch (RuntimeException e) {
+                //No DevTools connection: the base site's cookies are gone already
+            }
+        }
+        //The page was rendered with the old cookies and storage
+        if (baseUrl != null) {
+            driver.navigate().refresh();
+        }
+    }
+
+    private void closeNetworkFilter() {
+        if (networkFilter != null) {
+            networkFilter.close();
+            networkFilter = null;
+        }
+    }
+
+    void quit() {
+        closeNetworkFilter();
+        //Memory after the session's tests ran, before the browser goes away
+        LaunchMetrics.recordQuit(browser, launchProfile, LaunchMetrics.getProcessTreeRss(driverPid));
+        WindowRegistry.remove(driver);
+        try {
+            driver.quit();
+        } catch (Exception e) {
+            //Session is already gone, the driver process is stopped below
+        } finally {
+            //Stops only the driver process this session started, never other sessions on the machine
+            if (service != null) {
+                service.stop();
+            }
+            //The browser has exited: its copy of the seed profile is no longer in use
+            LaunchProfile.deleteProfileCopy(profileCopy);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return browser + "@" + server + " " + driver;
+    }
+}
@@ -0,0 +1,71 @@
+package commons;
+
+import java.util.Collections;
+import java.util.Map;
+
+public class ElementSnapshot {
+    //Values of one element read in a single JavaScript round trip (see DomBatchReader)
+    //text/displayed follow WebElement.getText()/isDisplayed() closely but are computed in the page, not by the driver atoms
+
+    private final boolean present;
+    private final String text;
+    private final boolean displayed;
+    private final boolean selected;
+    private final boolean enabled;
+    private final String tagName;
+    private final Map<String, String> attributes;
+    private final Map<String, String> cssValues;
+
+    ElementSnapshot(boolean present, String text, boolean displayed, boolean selected, boolean enabled,
+                    String tagName, Map<String, String> attributes, Map<String, String> cssValues) {
+        this.present = present;
+        this.text = text;
+        this.displayed = displayed;
+        this.selected = selected;
+        this.enabled = enabled;
+        this.tagName = tagName;
+        this.attributes = attributes;
+        this.cssValues = cssValues;
+    }
+
+    static ElementSnapshot notPresent() {
+        return new ElementSnapshot(false, null, false, false, false, null, Collections.emptyMap(), Collections.emptyMap());
+    }
+
+    public boolean isPresent() {
+        return present;
+    }
+
+    public String getText() {
+        return text;
+    }
+
+    public boolean isDisplayed() {
+        return displayed;
+    }
+
+    public boolean isSelected() {
+        return selected;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public String getTagName() {
+        return tagName;
+    }
+
+    public String getAttribute(String attributeName) {
+        return attributes.get(attributeName);
+    }
+
+    public String getCssValue(String propertyName) {
+        return cssValues.get(propertyName);
+    }
+
+    @Override
+    public String toString() {
+        return present ? "<" + tagName + "> " + text : "not present";
+    }
+}
@@ -0,0 +1,172 @@
+package commons;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class FixtureServer {
+    //Local HTTP stand-in for the app under test: serves classpath resources under fixtures/ plus stubbed paths
+    //Used by ServerList.LOCAL when -Dlocal.url is not set, so HtmlUnit/browser checks can run without the real site
+
+    private static final String FIXTURE_ROOT = "fixtures";
+    private static FixtureServer shared;
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final Map<String, Response> stubs = new ConcurrentHashMap<>();
+    //What the browser actually fetched, e.g. to compare a page load with and without NetworkFilter
+    private final AtomicLong requestCount = new AtomicLong();
+    private final AtomicLong servedBytes = new AtomicLong();
+
+    private static class Response {
+        private final int status;
+        private final String contentType;
+        private final byte[] body;
+
+        Response(int status, String contentType, byte[] body) {
+            this.status = status;
+            this.contentType = contentType;
+            this.body = body;
+        }
+    }
+
+    public FixtureServer(int port) {
+        try {
+            server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        } catch (IOException e) {
+            throw new RuntimeException("Cannot start fixture server on port " + port, e);
+        }
+        executor = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "fixture-server");
+            thread.setDaemon(true);
+            return thread;
+        });
+        server.setExecutor(executor);
+        server.createContext("/", this::handle);
+    }
+
+    //One server per JVM on a free port, stopped at exit
+    public static synchronized FixtureServer getShared() {
+        if (shared == null) {
+            shared = new FixtureServer(0).start();
+            Runtime.getRuntime().addShutdownHook(new Thread(shared::stop, "fixture-server-stop"));
+        }
+        return shared;
+    }
+
+    public FixtureServer start() {
+        //HttpServer's dispatcher thread inherits the daemon flag of the thread that starts it:
+        //start it from a daemon thread so a forgotten server never keeps the JVM alive
+        Thread starter = new Thread(server::start, "fixture-server-start");
+        starter.setDaemon(true);
+        starter.start();
+        try {
+            starter.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while starting the fixture server", e);
+        }
+        return this;
+    }
+
+    public void stop() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    public String getUrl() {
+        return "http://" + server.getAddress().getHostString() + ":" + server.getAddress().getPort() + "/";
+    }
+
+    public long getRequestCount() {
+        return requestCount.get();
+    }
+
+    public long getServedBytes() {
+        return servedBytes.get();
+    }
+
+    //Serve a fixed body on a path, e.g. stub("/login", "text/html", "<html>...</html>")
+    public FixtureServer stub(String path, String contentType, String body) {
+        return stub(path, 200, contentType, body);
+    }
+
+    public FixtureServer stub(String path, int status, String contentType, String body) {
+        stubs.put(path, new Response(status, contentType, body.getBytes(StandardCharsets.UTF_8)));
+        return this;
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            String path = exchange.getRequestURI().getPath();
+            Response response = stubs.get(path);
+            if (response == null) {
+                response = readFixture(path.endsWith("/") ? path + "index.html" : path);
+            }
+            exchange.getResponseHeaders().set("Content-Type", response.contentType);
+            boolean head = exchange.getRequestMethod().equalsIgnoreCase("HEAD");
+            exchange.sendResponseHeaders(response.status, head ? -1 : response.body.length);
+            requestCount.incrementAndGet();
+            if (!head) {
+                servedBytes.addAndGet(response.body.length);
+                try (OutputStream output = exchange.getResponseBody()) {
+                    output.write(response.body);
+                }
+            }
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private Response readFixture(String path) throws IOException {
+        if (path.contains("..")) {
+            return notFound(path);
+        }
+        try (InputStream input = getClass().getClassLoader().getResourceAsStream(FIXTURE_ROOT + path)) {
+            if (input == null) {
+                return notFound(path);
+            }
+            return new Response(200, getContentType(path), input.readAllBytes());
+        }
+    }
+
+    private static Response notFound(String path) {
+        return new Response(404, "text/html; charset=utf-8",
+                ("<html><head><title>404 Not Found</title></head><body>" + path + "</body></html>").getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String getContentType(String path) {
+        String extension = path.substring(path.lastIndexOf('.') + 1).toLowerCase();
+        switch (extension) {
+            case "html":
+            case "htm":
+                return "text/html; charset=utf-8";
+            case "css":
+                return "text/css; charset=utf-8";
+            case "js":
+                return "application/javascript; charset=utf-8";
+            case "json":
+                return "application/json; charset=utf-8";
+            case "png":
+                return "image/png";
+            case "jpg":
+            case "jpeg":
+                return "image/jpeg";
+            case "svg":
+                return "image/svg+xml";
+            default:
+                return "application/octet-stream";
+        }
+    }
+}
@@ -3,8 +3,93 @@ package commons;
 public class GlobalConstants {
     public static final long LONG_TIMEOUT = 30;
     public static final long SHORT_TIMEOUT = 5;
+    //WaitEngine polling: start at POLLING_INITIAL_MILLIS, grow by POLLING_MULTIPLIER up to POLLING_MAX_MILLIS
+    public static final long POLLING_INITIAL_MILLIS = Long.getLong("wait.poll.initial", 50);
+    public static final double POLLING_MULTIPLIER = Double.parseDouble(System.getProperty("wait.poll.multiplier", "1.5"));
+    public static final long POLLING_MAX_MILLIS = Long.getLong("wait.poll.max", 500);
     public static final String OS_NAME = System.getProperty("user.dir");
     public static final String RELATIVE_PROJECT_PATH = System.getProperty("user.dir");
 
+    //Max browser sessions alive at the same time (-Dbrowser.slots=N), default = number of cores
+    public static final int BROWSER_SLOTS = Integer.getInteger("browser.slots", Runtime.getRuntime().availableProcessors());
+    //Recycle sessions between test classes instead of quitting them (-Dsession.recycle=true)
+    public static final boolean SESSION_RECYCLE = Boolean.getBoolean("session.recycle");
+    //A recycled session is retired after this many test classes
+    public static final int SESSION_MAX_USES = Integer.getInteger("session.maxUses", 20);
+    //Allure attachments are written by a background thread through a bounded queue
+    public static final int ATTACHMENT_QUEUE_SIZE = Integer.getInteger("attachment.queue.size", 256);
+    public static final long ATTACHMENT_OFFER_TIMEOUT_MILLIS = Long.getLong("attachment.offer.timeout", 200);
+    public static final long ATTACHMENT_FLUSH_TIMEOUT_MILLIS = Long.getLong("attachment.flush.timeout", 60000);
+    //RetryAnalyzer: max retries per failure type and per suite
+    public static final int RETRY_TIMEOUT_MAX = Integer.getInteger("retry.timeout.max", 1);
+    public static final int RETRY_STALE_MAX = Integer.getInteger("retry.stale.max", 2);
+    public static final int RETRY_SESSION_MAX = Integer.getInteger("retry.session.max", 1);
+    public static final int RETRY_SUITE_BUDGET = Integer.getInteger("retry.budget", 10);
+    //Failure screenshots: format (jpg/png), jpeg quality, max size, near-duplicate distance
+    //Dedup distance -1 (default) = byte-identical captures only; >= 0 also merges near-duplicates (perceptual hash)
+    public static final String SCREENSHOT_FORMAT = System.getProperty("screenshot.format", "jpg");
+    public static final float SCREENSHOT_QUALITY = Float.parseFloat(System.getProperty("screenshot.quality", "0.6"));
+    public static final int SCREENSHOT_MAX_WIDTH = Integer.getInteger("screenshot.maxWidth", 1280);
+    public static final int SCREENSHOT_MAX_HEIGHT = Integer.getInteger("screenshot.maxHeight", 1280);
+    public static final int SCREENSHOT_DEDUP_DISTANCE = Integer.getInteger("screenshot.dedup.distance", -1);
+    //EvidenceCollector: failure evidence read by up to EVIDENCE_PARALLELISM threads; each item is bounded from its own
+    //start, the whole collection by EVIDENCE_TIMEOUT_MILLIS; cookie values are masked unless evidence.cookieValues=true
+    public static final int EVIDENCE_PARALLELISM = Integer.getInteger("evidence.parallelism", 3);
+    public static final long EVIDENCE_ITEM_TIMEOUT_MILLIS = Long.getLong("evidence.item.timeout", 5000);
+    public static final long EVIDENCE_TIMEOUT_MILLIS = Long.getLong("evidence.timeout", 8000);
+    public static final boolean EVIDENCE_COOKIE_VALUES = Boolean.getBoolean("evidence.cookieValues");
+    //@NonVisual classes run on HtmlUnit (-Dnonvisual.htmlunit=false runs them in the suite's browser)
+    public static final boolean NON_VISUAL_HTMLUNIT = Boolean.parseBoolean(System.getProperty("nonvisual.htmlunit", "true"));
+    //HtmlUnit runs page JavaScript only on demand: most non-visual checks read server-rendered HTML
+    public static final boolean HTMLUNIT_JAVASCRIPT = Boolean.getBoolean("htmlunit.javascript");
+    //ServerList.LOCAL: the app under test on this machine, or the built-in FixtureServer when not set
+    public static final String LOCAL_URL = System.getProperty("local.url");
+    //NetworkFilter (Chrome/Edge DevTools): on/off, comma separated block/allow URL patterns (* wildcard), image blocking
+    //An empty block list means NetworkFilter.DEFAULT_BLOCK_PATTERNS (analytics, ads, web fonts)
+    public static final boolean NETWORK_FILTER = Boolean.getBoolean("network.filter");
+    public static final String NETWORK_BLOCK_PATTERNS = System.getProperty("network.block", "");
+    public static final String NETWORK_ALLOW_PATTERNS = System.getProperty("network.allow", "");
+    public static final boolean NETWORK_BLOCK_IMAGES = Boolean.getBoolean("network.blockImages");
+    //SessionStateCache: saved logins (cookies + storage) per role and server, reused until this age
+    public static final String SESSION_STATE_DIR = System.getProperty("session.state.dir", RELATIVE_PROJECT_PATH + "/session-state");
+    public static final long SESSION_STATE_MAX_AGE_MINUTES = Long.getLong("session.state.maxAge", 240);
+    //LaunchProfile of new browser sessions: DEFAULT, HEADLESS_FAST, LOW_MEMORY or DEBUG_VISUAL; window size set at launch
+    public static final String LAUNCH_PROFILE = System.getProperty("launch.profile", "DEFAULT");
+    public static final int WINDOW_WIDTH = Integer.getInteger("window.width", 1920);
+    public static final int WINDOW_HEIGHT = Integer.getInteger("window.height", 1080);
+    //Start Chrome/Edge/Firefox with a BiDi connection so WindowRegistry follows windows through browsingContext events
+    public static final boolean WINDOW_BIDI = Boolean.getBoolean("window.bidi");
+    //LOW_MEMORY disk/memory cache size in bytes
+    public static final long LOW_MEMORY_CACHE_BYTES = Long.getLong("launch.cacheBytes", 8L * 1024 * 1024);
+    //Browser profile folder copied for every session (saved logins, settings, certificates), unset = fresh profile
+    public static final String BROWSER_SEED_PROFILE = System.getProperty("browser.profile.seed");
+    //DriverBinaryCache: driver binaries + manifest per browser version; offline = never download, use what is cached
+    public static final boolean DRIVER_CACHE = Boolean.parseBoolean(System.getProperty("driver.cache", "true"));
+    public static final String DRIVER_CACHE_DIR = System.getProperty("driver.cache.dir", System.getProperty("user.home") + "/.cache/nopcommerce-drivers");
+    public static final boolean DRIVER_CACHE_OFFLINE = Boolean.getBoolean("driver.cache.offline");
+    public static final long DRIVER_PREFLIGHT_TIMEOUT_SECONDS = Long.getLong("driver.preflight.timeout", 120);
+    //isPageLoadedSuccess (ReadinessProbe): no request, animation or DOM change for this long counts as loaded
+    public static final long READINESS_QUIET_MILLIS = Long.getLong("readiness.quiet", 100);
+    //Index of this JVM when the suite is split over several JVMs (-1 = not sharded)
+    public static final int SHARD_INDEX = Integer.getInteger("shard.index", -1);
+    //ShardRunner (mvn test -Pshards): number of JVMs the suite is split over
+    public static final int SHARD_COUNT = Integer.getInteger("shard.count", 2);
+    //Allure results and log folders, set per shard by ShardRunner (allure-json/shard-N, logs/shard-N)
+    public static final String ALLURE_RESULTS_DIR = System.getProperty("allure.results.directory", "allure-json");
+    public static final String LOGS_DIR = System.getProperty("logs.dir", "logs");
+    //ResultStreamWriter: one JSON line per finished test, appended as it finishes
+    //ShardRunner gives each shard results-shard<N>.jsonl next to RESULTS_FILE and merges them into it
+    //results.stream.logs: a test's log lines go into its JSON line instead of the TestNG report
+    public static final boolean RESULTS_STREAM = Boolean.parseBoolean(System.getProperty("results.stream", "true"));
+    public static final String RESULTS_FILE = System.getProperty("results.file", RELATIVE_PROJECT_PATH + "/target/results.jsonl");
+    public static final boolean RESULTS_STREAM_LOGS = Boolean.getBoolean("results.stream.logs");
+    //TestDataService: entities generated ahead per type
+    public static final int TEST_DATA_POOL_SIZE = Integer.getInteger("testdata.pool.size", 256);
+    //Per-action timing (ActionMetrics), attached per test to Allure and written per run to METRICS_FILE
+    public static final boolean METRICS_ENABLED = Boolean.getBoolean("metrics.enabled");
+    public static final String METRICS_FILE = System.getProperty("metrics.file", RELATIVE_PROJECT_PATH + "/target/action-metrics.json");
+    //DurationScheduler: per-class duration history and the weight of the latest run in its moving average
+    public static final String SCHEDULE_HISTORY_FILE = System.getProperty("schedule.history", RELATIVE_PROJECT_PATH + "/test-history/durations.properties");
+    public static final double SCHEDULE_EWMA_ALPHA = Double.parseDouble(System.getProperty("schedule.alpha", "0.3"));
 
 }
@@ -0,0 +1,106 @@
+package commons;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+public class LaunchMetrics {
+    //Startup time and memory of browser sessions per browser + LaunchProfile
+    //Memory = resident set size of the driver process and everything it started (the browser), read from /proc,
+    //so it is only known on Linux; measured right after the launch and again when the session quits
+
+    private static final Map<String, Stats> stats = new ConcurrentHashMap<>();
+
+    private LaunchMetrics() {
+    }
+
+    private static class Stats {
+        private long sessions;
+        private long totalStartupNanos;
+        private long maxStartupNanos;
+        private long measuredSessions;
+        private long totalStartBytes;
+        private long peakBytes;
+
+        synchronized void addStart(long startupNanos, long rssBytes) {
+            sessions++;
+            totalStartupNanos += startupNanos;
+            maxStartupNanos = Math.max(maxStartupNanos, startupNanos);
+            if (rssBytes >= 0) {
+                measuredSessions++;
+                totalStartBytes += rssBytes;
+                peakBytes = Math.max(peakBytes, rssBytes);
+            }
+        }
+
+        synchronized void addQuit(long rssBytes) {
+            peakBytes = Math.max(peakBytes, rssBytes);
+        }
+
+        synchronized String format() {
+            return sessions + " sessions, startup avg " + (totalStartupNanos / Math.max(1, sessions) / 1_000_000)
+                    + " ms / max " + (maxStartupNanos / 1_000_000) + " ms, memory "
+                    + (measuredSessions == 0 ? "n/a" : "avg at start " + toMegabytes(totalStartBytes / measuredSessions)
+                    + " MB / peak " + toMegabytes(peakBytes) + " MB");
+        }
+    }
+
+    static void recordStart(BrowserList browser, LaunchProfile profile, long startupNanos, long rssBytes) {
+        stats.computeIfAbsent(getKey(browser, profile), key -> new Stats()).addStart(startupNanos, rssBytes);
+    }
+
+    static void recordQuit(BrowserList browser, LaunchProfile profile, long rssBytes) {
+        if (rssBytes >= 0) {
+            stats.computeIfAbsent(getKey(browser, profile), key -> new Stats()).addQuit(rssBytes);
+        }
+    }
+
+    //Resident memory of a process and all its descendants in bytes, -1 when it cannot be read
+    static long getProcessTreeRss(long pid) {
+        if (pid < 0) {
+            return -1;
+        }
+        return ProcessHandle.of(pid).map(process -> {
+            long total = readRss(process.pid());
+            if (total < 0) {
+                return -1L;
+            }
+            try (Stream<ProcessHandle> descendants = process.descendants()) {
+                total += descendants.mapToLong(descendant -> Math.max(0, readRss(descendant.pid()))).sum();
+            }
+            return total;
+        }).orElse(-1L);
+    }
+
+    private static long readRss(long pid) {
+        try (Stream<String> lines = Files.lines(Paths.get("/proc", String.valueOf(pid), "status"))) {
+            //"VmRSS:    123456 kB"
+            return lines.filter(line -> line.startsWith("VmRSS:"))
+                    .mapToLong(line -> Long.parseLong(line.replaceAll("[^0-9]", "")) * 1024)
+                    .findFirst().orElse(-1);
+        } catch (IOException | RuntimeException e) {
+            return -1;
+        }
+    }
+
+    static String toMegabytes(long bytes) {
+        return bytes < 0 ? "n/a" : String.valueOf(bytes / (1024 * 1024));
+    }
+
+    private static String getKey(BrowserList browser, LaunchProfile profile) {
+        return browser + "/" + profile;
+    }
+
+    public static String getReport() {
+        if (stats.isEmpty()) {
+            return "Browser launches: none";
+        }
+        StringBuilder report = new StringBuilder("Browser launches:");
+        new TreeMap<>(stats).forEach((key, value) -> report.append("\n  ").append(key).append(": ").append(value.format()));
+        return report.toString();
+    }
+}
@@ -0,0 +1,195 @@
+package commons;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.openqa.selenium.chrome.ChromeOptions;
+import org.openqa.selenium.chromium.ChromiumOptions;
+import org.openqa.selenium.edge.EdgeOptions;
+import org.openqa.selenium.firefox.FirefoxOptions;
+import org.openqa.selenium.firefox.FirefoxProfile;
+import org.openqa.selenium.logging.LogType;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+public enum LaunchProfile {
+    //How browsers are launched (-Dlaunch.profile=HEADLESS_FAST): every option goes into the launch command,
+    //including the window size, so no extra round trips are needed once the session is up
+    //DEFAULT      - visible window at 0,0 with the configured size, as before
+    //HEADLESS_FAST - headless, no extensions/GPU/first-run/background work
+    //LOW_MEMORY   - HEADLESS_FAST plus small caches and fewer renderer processes, for more sessions per CI node
+    //DEBUG_VISUAL - visible window with the developer tools open
+    DEFAULT(false),
+    HEADLESS_FAST(true),
+    LOW_MEMORY(true),
+    DEBUG_VISUAL(false);
+
+    private static final Logger log = LogManager.getLogger(LaunchProfile.class);
+    private static final String PROFILE_COPY_PREFIX = "browser-profile-";
+    private static boolean orphansDeleted;
+
+    private final boolean headless;
+
+    LaunchProfile(boolean headless) {
+        this.headless = headless;
+    }
+
+    public static LaunchProfile getActive() {
+        return valueOf(GlobalConstants.LAUNCH_PROFILE.toUpperCase());
+    }
+
+    public boolean isHeadless() {
+        return headless;
+    }
+
+    //userDataDir: the session's copy of the seed profile (copySeedProfile), null for a fresh profile
+    public ChromeOptions chromeOptions(Path userDataDir) {
+        return applyChromium(new ChromeOptions(), userDataDir);
+    }
+
+    public EdgeOptions edgeOptions(Path userDataDir) {
+        return applyChromium(new EdgeOptions(), userDataDir);
+    }
+
+    private <T extends ChromiumOptions<?>> T applyChromium(T options, Path userDataDir) {
+        options.addArguments("--window-size=" + GlobalConstants.WINDOW_WIDTH + "," + GlobalConstants.WINDOW_HEIGHT,
+                "--window-position=0,0", "--no-first-run", "--no-default-browser-check");
+        if (headless) {
+            options.addArguments("--headless=new", "--disable-gpu", "--disable-extensions", "--disable-dev-shm-usage",
+                    "--disable-background-networking", "--disable-background-timer-throttling", "--disable-default-apps",
+                    "--disable-sync", "--disable-component-update", "--metrics-recording-only", "--mute-audio",
+                    "--hide-scrollbars");
+        }
+        if (this == LOW_MEMORY) {
+            //One process per site is the main memory cost of Chromium; the test pages are trusted
+            options.addArguments("--disk-cache-size=" + GlobalConstants.LOW_MEMORY_CACHE_BYTES,
+                    "--media-cache-size=" + GlobalConstants.LOW_MEMORY_CACHE_BYTES, "--renderer-process-limit=2",
+                    "--disable-features=IsolateOrigins,site-per-process,Translate,OptimizationHints,MediaRouter",
+                    "--disable-software-rasterizer", "--js-flags=--max-old-space-size=256");
+        }
+        if (this == DEBUG_VISUAL) {
+            options.addArguments("--auto-open-devtools-for-tabs");
+        }
+        if (userDataDir != null) {
+            options.addArguments("--user-data-dir=" + userDataDir);
+        }
+        if (GlobalConstants.WINDOW_BIDI) {
+            options.setCapability("webSocketUrl", true);
+        }
+        //Keeps the console messages so EvidenceCollector can attach them on failure
+        options.setCapability("goog:loggingPrefs", Collections.singletonMap(LogType.BROWSER, "ALL"));
+        return options;
+    }
+
+    public FirefoxOptions firefoxOptions() {
+        FirefoxOptions options = new FirefoxOptions();
+        options.addArguments("-width", String.valueOf(GlobalConstants.WINDOW_WIDTH),
+                "-height", String.valueOf(GlobalConstants.WINDOW_HEIGHT));
+        //FirefoxProfile copies the seed folder itself when the session starts, no copy of our own needed
+        FirefoxProfile profile = GlobalConstants.BROWSER_SEED_PROFILE != null
+                ? new FirefoxProfile(new File(GlobalConstants.BROWSER_SEED_PROFILE)) : new FirefoxProfile();
+        profile.setPreference("browser.shell.checkDefaultBrowser", false);
+        profile.setPreference("browser.startup.homepage_override.mstone", "ignore");
+        profile.setPreference("datareporting.policy.dataSubmissionEnabled", false);
+        profile.setPreference("toolkit.telemetry.reportingpolicy.firstRun", false);
+        if (headless) {
+            options.addArguments("-headless");
+            profile.setPreference("extensions.update.enabled", false);
+            profile.setPreference("app.update.enabled", false);
+            profile.setPreference("layers.acceleration.disabled", true);
+        }
+        if (this == LOW_MEMORY) {
+            profile.setPreference("browser.cache.disk.enable", false);
+            profile.setPreference("browser.cache.memory.capacity", (int) (GlobalConstants.LOW_MEMORY_CACHE_BYTES / 1024));
+            profile.setPreference("browser.sessionhistory.max_total_viewers", 0);
+            profile.setPreference("dom.ipc.processCount", 1);
+            profile.setPreference("fission.autostart", false);
+        }
+        if (this == DEBUG_VISUAL) {
+            options.addArguments("-devtools");
+        }
+        if (GlobalConstants.WINDOW_BIDI) {
+            options.setCapability("webSocketUrl", true);
+        }
+        return options.setProfile(profile);
+    }
+
+    //Chrome/Edge run in the profile folder they are given and parallel sessions cannot share one: each session gets
+    //its own copy of the seed, owned by its DriverSession and deleted when the session quits (null = fresh profile)
+    //Copies are named after the JVM, so copies left by a killed run are deleted by the next one
+    static Path copySeedProfile() {
+        if (GlobalConstants.BROWSER_SEED_PROFILE == null) {
+            return null;
+        }
+        deleteOrphanedCopies();
+        Path seed = Paths.get(GlobalConstants.BROWSER_SEED_PROFILE);
+        Path copy = null;
+        try {
+            copy = Files.createTempDirectory(PROFILE_COPY_PREFIX + ProcessHandle.current().pid() + "-");
+            try (Stream<Path> files = Files.walk(seed)) {
+                for (Path file : (Iterable<Path>) files::iterator) {
+                    String name = file.getFileName() == null ? "" : file.getFileName().toString();
+                    //Lock files of the browser that created the seed would make the copy look in use
+                    if (name.startsWith("Singleton") || name.equals("lock") || name.equals(".parentlock")) {
+                        continue;
+                    }
+                    Path target = copy.resolve(seed.relativize(file).toString());
+                    if (Files.isDirectory(file)) {
+                        Files.createDirectories(target);
+                    } else {
+                        Files.copy(file, target, StandardCopyOption.REPLACE_EXISTING);
+                    }
+                }
+            }
+            return copy;
+        } catch (IOException e) {
+            deleteProfileCopy(copy);
+            throw new UncheckedIOException("Cannot copy seed profile " + seed, e);
+        }
+    }
+
+    static void deleteProfileCopy(Path copy) {
+        if (copy == null) {
+            return;
+        }
+        try (Stream<Path> files = Files.walk(copy)) {
+            files.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+        } catch (IOException e) {
+            log.warn("Cannot delete profile copy " + copy + ": " + e.getMessage());
+        }
+    }
+
+    //Once per JVM: copies whose JVM is no longer running
+    private static synchronized void deleteOrphanedCopies() {
+        if (orphansDeleted) {
+            return;
+        }
+        orphansDeleted = true;
+        try (Stream<Path> copies = Files.list(Paths.get(System.getProperty("java.io.tmpdir")))) {
+            copies.filter(copy -> copy.getFileName().toString().startsWith(PROFILE_COPY_PREFIX))
+                    .filter(copy -> !isOwnerAlive(copy.getFileName().toString()))
+                    .forEach(LaunchProfile::deleteProfileCopy);
+        } catch (IOException e) {
+            log.warn("Cannot list old profile copies: " + e.getMessage());
+        }
+    }
+
+    //"browser-profile-<pid>-<random>"
+    private static boolean isOwnerAlive(String name) {
+        String[] parts = name.substring(PROFILE_COPY_PREFIX.length()).split("-");
+        try {
+            return ProcessHandle.of(Long.parseLong(parts[0])).map(ProcessHandle::isAlive).orElse(false);
+        } catch (NumberFormatException e) {
+            //Not one of ours
+            return true;
+        }
+    }
+}
@@ -0,0 +1,187 @@
+package commons;
+
+import org.openqa.selenium.By;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.MissingFormatArgumentException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+public class LocatorCache {
+    //Compiled locators: "strategy=value" is parsed once per locator string, repeated lookups reuse the same By
+    //Dynamic locator templates are pre-split around %s so parameters are filled in without reparsing
+
+    private static final int MAX_SIZE = 4096;
+    private static final Map<String, Locator> locators = new ConcurrentHashMap<>();
+    private static final Map<String, Template> templates = new ConcurrentHashMap<>();
+
+    private LocatorCache() {
+    }
+
+    public enum Strategy {
+        XPATH("xpath", By::xpath),
+        CSS("css", By::cssSelector),
+        ID("id", By::id),
+        NAME("name", By::name),
+        CLASS("class", By::className),
+        TAG_NAME("tagName", By::tagName);
+
+        private final String prefix;
+        private final Function<String, By> factory;
+
+        Strategy(String prefix, Function<String, By> factory) {
+            this.prefix = prefix;
+            this.factory = factory;
+        }
+
+        public String getPrefix() {
+            return prefix;
+        }
+
+        By toBy(String value) {
+            return factory.apply(value);
+        }
+
+        //Case-insensitive "prefix=" match, e.g. xpath=, XPath=, css=, CSS=
+        static Strategy of(String locator) {
+            for (Strategy strategy : values()) {
+                int length = strategy.prefix.length();
+                if (locator.length() > length && locator.charAt(length) == '='
+                        && locator.regionMatches(true, 0, strategy.prefix, 0, length)) {
+                    return strategy;
+                }
+            }
+            throw new RuntimeException("Locator type is not valid: " + locator);
+        }
+    }
+
+    public static class Locator {
+        private final Strategy strategy;
+        private final String value;
+        private final By by;
+
+        Locator(Strategy strategy, String value) {
+            this.strategy = strategy;
+            this.value = value;
+            this.by = strategy.toBy(value);
+        }
+
+        public Strategy getStrategy() {
+            return strategy;
+        }
+
+        public String getValue() {
+            return value;
+        }
+
+        public By getBy() {
+            return by;
+        }
+    }
+
+    private static class Template {
+        private final Strategy strategy;
+        private final String prefix;
+        private final String[] fragments;
+        private final int fixedLength;
+        //Templates with other format specifiers (%d, %1$s, %%) keep going through String.format
+        private final boolean formatFallback;
+
+        Template(String template) {
+            strategy = Strategy.of(template);
+            prefix = template.substring(0, strategy.prefix.length() + 1);
+            String value = template.substring(prefix.length());
+
+            List<String> parts = new ArrayList<>();
+            boolean fallback = false;
+            int start = 0;
+            int index;
+            while ((index = value.indexOf('%', start)) >= 0) {
+                if (index + 1 < value.length() && value.charAt(index + 1) == 's') {
+                    parts.add(value.substring(start, index));
+                    start = index + 2;
+                } else {
+                    fallback = true;
+                    break;
+                }
+            }
+            parts.add(value.substring(start));
+            formatFallback = fallback;
+            fragments = parts.toArray(new String[0]);
+
+            int length = 0;
+            for (String fragment : fragments) {
+                length += fragment.length();
+            }
+            fixedLength = length;
+        }
+
+        String fillValue(String template, String... params) {
+            if (formatFallback) {
+                return String.format(template.substring(prefix.length()), (Object[]) params);
+            }
+            int holes = fragments.length - 1;
+            if (params.length < holes) {
+                throw new MissingFormatArgumentException("%s");
+            }
+            if (holes == 0) {
+                return fragments[0];
+            }
+            StringBuilder value = new StringBuilder(fixedLength + 16 * holes);
+            value.append(fragments[0]);
+            for (int i = 0; i < holes; i++) {
+                value.append(params[i]).append(fragments[i + 1]);
+            }
+            return value.toString();
+        }
+    }
+
+    public static Locator compile(String locator) {
+        Locator compiled = locators.get(locator);
+        if (compiled == null) {
+            Strategy strategy = Strategy.of(locator);
+            compiled = new Locator(strategy, locator.substring(strategy.prefix.length() + 1));
+            put(locators, locator, compiled);
+        }
+        return compiled;
+    }
+
+    public static By getBy(String locator) {
+        return compile(locator).getBy();
+    }
+
+    public static By getBy(String template, String... params) {
+        Template compiled = getTemplate(template);
+        return compiled.strategy.toBy(compiled.fillValue(template, params));
+    }
+
+    public static Locator compile(String template, String... params) {
+        Template compiled = getTemplate(template);
+        return new Locator(compiled.strategy, compiled.fillValue(template, params));
+    }
+
+    //Same result as String.format(template, params) for "%s" templates
+    public static String format(String template, String... params) {
+        Template compiled = getTemplate(template);
+        return compiled.prefix + compiled.fillValue(template, params);
+    }
+
+    private static Template getTemplate(String template) {
+        Template compiled = templates.get(template);
+        if (compiled == null) {
+            compiled = new Template(template);
+            put(templates, template, compiled);
+        }
+        return compiled;
+    }
+
+    //Bounded: page objects use a fixed set of locators, so a full cache only happens with generated strings
+    private static <T> void put(Map<String, T> cache, String key, T value) {
+        if (cache.size() >= MAX_SIZE) {
+            cache.clear();
+        }
+        cache.put(key, value);
+    }
+}
@@ -5,19 +5,46 @@ import org.testng.IInvokedMethodListener;
 import org.testng.ITestResult;
 import org.testng.Reporter;
 import org.testng.internal.Utils;
+import reportConfig.ResultStreamWriter;
+import retryConfig.RetryAnalyzer;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 public class MethodListener implements IInvokedMethodListener {
+	private static final int MERGED_TRACE_FRAMES = 5;
+
+	// Result throwable of a test with several verify* failures; RetryAnalyzer classifies each of them
+	public static class MultipleFailures extends Throwable {
+		private final List<Throwable> failures;
+
+		MultipleFailures(String message, List<Throwable> failures) {
+			super(message);
+			this.failures = new ArrayList<>(failures);
+		}
+
+		public List<Throwable> getFailures() {
+			return Collections.unmodifiableList(failures);
+		}
+
+		private static final long serialVersionUID = 1L;
+	}
+
 	@Override
 	public void beforeInvocation(IInvokedMethod method, ITestResult result) {
 		//log.debug("Before invocation of " + method.getTestMethod().getMethodName());
+		TestNGAppender.bindTestResult(result);
+		if (ActionMetrics.ENABLED && method.isTestMethod()) {
+			ActionMetrics.startTest();
+		}
 	}
 
 	@Override
 	public void afterInvocation(IInvokedMethod method, ITestResult result) {
 		//log.debug("After invocation of " + method.getTestMethod().getMethodName());
 		Reporter.setCurrentTestResult(result);
+		TestNGAppender.flushTestResult(result);
 		if (method.isTestMethod()) {
 			VerificationFailures allFailures = VerificationFailures.getFailures();
 
@@ -26,27 +53,48 @@ public class MethodListener implements IInvokedMethodListener {
 				allFailures.addFailureForTest(result, result.getThrowable());
 			}
 
-			List<Throwable> failures = allFailures.getFailuresForTest(result);
+			// Take the failures out of the store: after the merge nothing reads them again
+			List<Throwable> failures = allFailures.removeFailuresForTest(result);
 			int size = failures.size() - 1;
 
 			if (size > 0) {
 				result.setStatus(ITestResult.FAILURE);
+				// Every failure with its full trace goes to the results stream (the last entry is the result's own throwable again)
+				result.setAttribute(ResultStreamWriter.FAILURES_ATTRIBUTE, failures.subList(0, size));
 				if (size == 1) {
 					result.setThrowable(failures.get(0));
 				} else {
-					StringBuffer message = new StringBuffer("Multiple failures (").append(size).append("):\n");
+					StringBuilder message = new StringBuilder(256 * size).append("Multiple failures (").append(size).append("):\n");
 					for (int failure = 0; failure < size - 1; failure++) {
 						message.append("Failure ").append(failure + 1).append(" of ").append(size).append("\n");
-						message.append(Utils.longStackTrace(failures.get(failure), false)).append("\n");
+						appendFailure(message, failures.get(failure));
 					}
 					Throwable last = failures.get(size - 1);
 					message.append("Failure ").append(size).append(" of ").append(size).append("\n");
 					message.append(last.toString());
-					Throwable merged = new Throwable(message.toString());
+					Throwable merged = new MultipleFailures(message.toString(), failures.subList(0, size));
 					merged.setStackTrace(last.getStackTrace());
 					result.setThrowable(merged);
 				}
 			}
+
+			// A pass after retries is recorded as flaky, not as a clean pass
+			if (RetryAnalyzer.isFlakyPass(result)) {
+				Reporter.log("Flaky: passed after " + (RetryAnalyzer.getAttempt(result) - 1) + " retries");
+			}
+		}
+	}
+
+	// With the results stream on, the merged message keeps each failure short: the full traces are in the stream
+	private static void appendFailure(StringBuilder message, Throwable failure) {
+		if (!GlobalConstants.RESULTS_STREAM) {
+			message.append(Utils.longStackTrace(failure, false)).append("\n");
+			return;
+		}
+		message.append(failure).append("\n");
+		StackTraceElement[] trace = failure.getStackTrace();
+		for (int frame = 0; frame < Math.min(MERGED_TRACE_FRAMES, trace.length); frame++) {
+			message.append("\tat ").append(trace[frame]).append("\n");
 		}
 	}
 
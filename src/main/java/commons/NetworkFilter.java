@@ -0,0 +1,279 @@
+package commons;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.WrapsDriver;
+import org.openqa.selenium.devtools.HasDevTools;
+import org.openqa.selenium.devtools.NetworkInterceptor;
+import org.openqa.selenium.remote.http.Contents;
+import org.openqa.selenium.remote.http.Filter;
+import org.openqa.selenium.remote.http.HttpHandler;
+import org.openqa.selenium.remote.http.HttpRequest;
+import org.openqa.selenium.remote.http.HttpResponse;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+
+public class NetworkFilter implements AutoCloseable {
+    //Request interception for one browser session (DevTools Fetch domain through NetworkInterceptor):
+    //blocks analytics/ads/fonts and optionally images, answers stubbed URLs, lets everything else through
+    //Allow patterns win over block patterns; stubs win over both
+    //Among stubs the last registered matching one answers; stubbing the same pattern again replaces it
+
+    private static final Logger log = LogManager.getLogger(NetworkFilter.class);
+
+    //Trackers, ads and web fonts that no assertion looks at
+    public static final List<String> DEFAULT_BLOCK_PATTERNS = Arrays.asList(
+            "*google-analytics.com/*", "*googletagmanager.com/*", "*doubleclick.net/*", "*googlesyndication.com/*",
+            "*googleadservices.com/*", "*facebook.net/*", "*connect.facebook.com/*", "*hotjar.com/*",
+            "*fonts.googleapis.com/*", "*fonts.gstatic.com/*", "*.woff", "*.woff2", "*.ttf", "*.otf");
+    private static final List<String> IMAGE_EXTENSIONS = Arrays.asList(
+            ".png", ".jpg", ".jpeg", ".gif", ".webp", ".svg", ".ico", ".bmp", ".avif");
+
+    //Blocked requests are never downloaded, so their size is estimated from typical sizes per resource kind
+    private static final long ESTIMATED_IMAGE_BYTES = 40_000;
+    private static final long ESTIMATED_FONT_BYTES = 30_000;
+    private static final long ESTIMATED_SCRIPT_BYTES = 50_000;
+    private static final long ESTIMATED_OTHER_BYTES = 5_000;
+
+    private static final AtomicLong totalRequests = new AtomicLong();
+    private static final AtomicLong totalBlocked = new AtomicLong();
+    private static final AtomicLong totalStubbed = new AtomicLong();
+    private static final AtomicLong totalBytesSaved = new AtomicLong();
+
+    private final List<Pattern> blockPatterns = new CopyOnWriteArrayList<>();
+    private final List<Pattern> allowPatterns = new CopyOnWriteArrayList<>();
+    //Newest first
+    private final List<Stub> stubs = new CopyOnWriteArrayList<>();
+    private volatile boolean blockImages;
+    private NetworkInterceptor interceptor;
+    private volatile boolean notInstalled;
+
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong blocked = new AtomicLong();
+    private final AtomicLong stubbed = new AtomicLong();
+    private final AtomicLong bytesSaved = new AtomicLong();
+
+    private static class Stub {
+        private final String urlPattern;
+        private final Pattern pattern;
+        private final int status;
+        private final String contentType;
+        private final String body;
+
+        Stub(String urlPattern, int status, String contentType, String body) {
+            this.urlPattern = urlPattern;
+            this.pattern = toRegex(urlPattern);
+            this.status = status;
+            this.contentType = contentType;
+            this.body = body;
+        }
+
+        HttpResponse toResponse() {
+            return new HttpResponse()
+                    .setStatus(status)
+                    .addHeader("Content-Type", contentType)
+                    .addHeader("Access-Control-Allow-Origin", "*")
+                    .setContent(Contents.utf8String(body));
+        }
+    }
+
+    //Filter configured from -Dnetwork.block / -Dnetwork.allow / -Dnetwork.blockImages
+    public static NetworkFilter fromConfiguration() {
+        NetworkFilter filter = new NetworkFilter();
+        List<String> block = splitPatterns(GlobalConstants.NETWORK_BLOCK_PATTERNS);
+        for (String pattern : block.isEmpty() ? DEFAULT_BLOCK_PATTERNS : block) {
+            filter.block(pattern);
+        }
+        for (String pattern : splitPatterns(GlobalConstants.NETWORK_ALLOW_PATTERNS)) {
+            filter.allow(pattern);
+        }
+        return filter.blockImages(GlobalConstants.NETWORK_BLOCK_IMAGES);
+    }
+
+    //URL patterns use * as wildcard and match the whole URL, e.g. "*doubleclick.net/*", "*.woff2"
+    public NetworkFilter block(String urlPattern) {
+        checkInstalled();
+        blockPatterns.add(toRegex(urlPattern));
+        return this;
+    }
+
+    public NetworkFilter allow(String urlPattern) {
+        checkInstalled();
+        allowPatterns.add(toRegex(urlPattern));
+        return this;
+    }
+
+    public NetworkFilter blockImages(boolean blockImages) {
+        checkInstalled();
+        this.blockImages = blockImages;
+        return this;
+    }
+
+    public NetworkFilter stub(String urlPattern, int status, String contentType, String body) {
+        checkInstalled();
+        Stub stub = new Stub(urlPattern, status, contentType, body);
+        synchronized (stubs) {
+            stubs.removeIf(existing -> existing.urlPattern.equals(urlPattern));
+            stubs.add(0, stub);
+        }
+        return this;
+    }
+
+    //Start intercepting; browsers without DevTools (Firefox/Safari/HtmlUnit) keep loading everything
+    //After a failed install, block/allow/stub throw instead of being ignored
+    public boolean install(WebDriver driver) {
+        WebDriver target = driver instanceof WrapsDriver ? ((WrapsDriver) driver).getWrappedDriver() : driver;
+        if (!(target instanceof HasDevTools)) {
+            log.warn("Network filter skipped: " + target.getClass().getSimpleName() + " has no DevTools support");
+            notInstalled = true;
+            return false;
+        }
+        try {
+            interceptor = new NetworkInterceptor(target, (Filter) this::intercept);
+            notInstalled = false;
+            return true;
+        } catch (RuntimeException e) {
+            //e.g. a browser newer than the DevTools versions bundled with this Selenium
+            log.warn("Network filter skipped: " + e.getMessage());
+            notInstalled = true;
+            return false;
+        }
+    }
+
+    private void checkInstalled() {
+        if (notInstalled) {
+            throw new IllegalStateException("Network filter could not be installed on this session (no DevTools connection): "
+                    + "blocks and stubs would be ignored");
+        }
+    }
+
+    private HttpHandler intercept(HttpHandler next) {
+        return request -> {
+            String url = request.getUri();
+            requests.incrementAndGet();
+            totalRequests.incrementAndGet();
+
+            for (Stub stub : stubs) {
+                if (matches(stub.pattern, url)) {
+                    stubbed.incrementAndGet();
+                    totalStubbed.incrementAndGet();
+                    return stub.toResponse();
+                }
+            }
+            if (isBlocked(request, url)) {
+                long estimate = estimateSize(url);
+                blocked.incrementAndGet();
+                totalBlocked.incrementAndGet();
+                bytesSaved.addAndGet(estimate);
+                totalBytesSaved.addAndGet(estimate);
+                //Answered locally with an empty body: nothing goes over the network
+                return new HttpResponse().setStatus(204).addHeader("Access-Control-Allow-Origin", "*");
+            }
+            return next.execute(request);
+        };
+    }
+
+    private boolean isBlocked(HttpRequest request, String url) {
+        for (Pattern pattern : allowPatterns) {
+            if (matches(pattern, url)) {
+                return false;
+            }
+        }
+        if (blockImages && isImage(request, url)) {
+            return true;
+        }
+        for (Pattern pattern : blockPatterns) {
+            if (matches(pattern, url)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    //"*.woff2" also matches ".../font.woff2?v=3"
+    private static boolean matches(Pattern pattern, String url) {
+        return pattern.matcher(url).matches() || pattern.matcher(url.replaceFirst("[?#].*$", "")).matches();
+    }
+
+    private static boolean isImage(HttpRequest request, String url) {
+        String accept = request.getHeader("Accept");
+        if (accept != null && accept.startsWith("image/")) {
+            return true;
+        }
+        return IMAGE_EXTENSIONS.contains(getExtension(url));
+    }
+
+    private static long estimateSize(String url) {
+        String extension = getExtension(url);
+        if (IMAGE_EXTENSIONS.contains(extension)) {
+            return ESTIMATED_IMAGE_BYTES;
+        }
+        if (extension.startsWith(".woff") || extension.equals(".ttf") || extension.equals(".otf") || url.contains("fonts.g")) {
+            return ESTIMATED_FONT_BYTES;
+        }
+        if (extension.equals(".js") || url.contains("analytics") || url.contains("tagmanager")) {
+            return ESTIMATED_SCRIPT_BYTES;
+        }
+        return ESTIMATED_OTHER_BYTES;
+    }
+
+    private static String getExtension(String url) {
+        String path = url.replaceFirst("[?#].*$", "").toLowerCase(Locale.ROOT);
+        int slash = path.lastIndexOf('/');
+        int dot = path.lastIndexOf('.');
+        return dot > slash ? path.substring(dot) : "";
+    }
+
+    public String getMetrics() {
+        return "Network requests=" + requests.get() + ", blocked=" + blocked.get() + ", stubbed=" + stubbed.get()
+                + ", estimated bytes saved=" + bytesSaved.get();
+    }
+
+    public static String getTotals() {
+        return "Network requests=" + totalRequests.get() + ", blocked=" + totalBlocked.get() + ", stubbed=" + totalStubbed.get()
+                + ", estimated bytes saved=" + totalBytesSaved.get();
+    }
+
+    @Override
+    public void close() {
+        if (interceptor != null) {
+            try {
+                interceptor.close();
+            } catch (RuntimeException e) {
+                //Browser already gone
+            }
+            interceptor = null;
+        }
+    }
+
+    private static List<String> splitPatterns(String patterns) {
+        List<String> split = new ArrayList<>();
+        if (patterns != null) {
+            for (String pattern : patterns.split(",")) {
+                if (!pattern.trim().isEmpty()) {
+                    split.add(pattern.trim());
+                }
+            }
+        }
+        return split;
+    }
+
+    private static Pattern toRegex(String urlPattern) {
+        String[] parts = urlPattern.split("\\*", -1);
+        StringBuilder regex = new StringBuilder();
+        for (int i = 0; i < parts.length; i++) {
+            if (i > 0) {
+                regex.append(".*");
+            }
+            regex.append(Pattern.quote(parts[i]));
+        }
+        return Pattern.compile(regex.toString(), Pattern.CASE_INSENSITIVE);
+    }
+}
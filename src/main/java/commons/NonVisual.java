@@ -0,0 +1,13 @@
+package commons;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+//Test class that only reads title, URL, page source, cookies or text: getBrowserEnvironment gives it an HtmlUnit session
+//No screenshots, layout or visibility checks in such a class
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.TYPE)
+public @interface NonVisual {
+}
@@ -0,0 +1,132 @@
+package commons;
+
+import org.openqa.selenium.JavascriptExecutor;
+import org.openqa.selenium.ScriptTimeoutException;
+import org.openqa.selenium.TimeoutException;
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.WebDriverException;
+
+import java.time.Duration;
+import java.util.Map;
+
+public class ReadinessProbe {
+    //"Page is ready" = document complete, no fetch/XHR in flight, no finite animation running and no DOM mutation,
+    //request start or request end for quietMillis (-Dreadiness.quiet). Works with or without jQuery (jQuery.active is one more signal).
+    //A script installed in the page keeps the counters; the wait is one executeAsyncScript that answers as soon as the
+    //page is quiet, so there is no polling from the test side. Requests started before the probe is installed
+    //(first wait after a navigation) are not counted; the readyState, jQuery and quiet window cover those.
+    //Infinite animations (spinners, carousels) are ignored, otherwise a page with one would never be ready.
+
+    //Longest single async call, well below the 30 s W3C default script timeout; longer waits take several calls
+    private static final long MAX_CALL_MILLIS = 10_000;
+
+    private static final String INSTALL =
+            "if (!window.__readinessProbe) {" +
+            "  var probe = window.__readinessProbe = { pending: 0, lastActivity: performance.now() };" +
+            "  var touch = function () { probe.lastActivity = performance.now(); };" +
+            "  var done = function () { probe.pending = Math.max(0, probe.pending - 1); touch(); };" +
+            "  if (window.fetch) {" +
+            "    var fetch = window.fetch;" +
+            "    window.fetch = function () {" +
+            "      probe.pending++; touch();" +
+            "      try {" +
+            "        var request = fetch.apply(this, arguments);" +
+            "        request.then(done, done);" +
+            "        return request;" +
+            "      } catch (e) { done(); throw e; }" +
+            "    };" +
+            "  }" +
+            "  if (window.XMLHttpRequest) {" +
+            "    var send = XMLHttpRequest.prototype.send;" +
+            "    XMLHttpRequest.prototype.send = function () {" +
+            "      var finished = false;" +
+            "      var finish = function () { if (!finished) { finished = true; done(); } };" +
+            "      this.addEventListener('loadend', finish);" +
+            "      probe.pending++; touch();" +
+            "      try { return send.apply(this, arguments); } catch (e) { finish(); throw e; }" +
+            "    };" +
+            "  }" +
+            "  if (window.MutationObserver) {" +
+            "    new MutationObserver(touch).observe(document, { childList: true, subtree: true, attributes: true, characterData: true });" +
+            "  }" +
+            "  probe.animations = function () {" +
+            "    if (!document.getAnimations) { return 0; }" +
+            "    return document.getAnimations().filter(function (animation) {" +
+            "      if (animation.playState !== 'running') { return false; }" +
+            "      var timing = animation.effect && animation.effect.getComputedTiming ? animation.effect.getComputedTiming() : null;" +
+            "      return !timing || timing.endTime !== Infinity;" +
+            "    }).length;" +
+            "  };" +
+            "}";
+
+    private static final String WAIT_SCRIPT =
+            INSTALL +
+            "var quietMillis = arguments[0], maxMillis = arguments[1], callback = arguments[arguments.length - 1];" +
+            "var probe = window.__readinessProbe, start = performance.now();" +
+            "var state = function () {" +
+            "  return { readyState: document.readyState, pending: probe.pending," +
+            "    jQueryActive: window.jQuery && window.jQuery.active ? window.jQuery.active : 0," +
+            "    animations: probe.animations(), idle: Math.round(performance.now() - probe.lastActivity) };" +
+            "};" +
+            "var check = function () {" +
+            "  var current = state();" +
+            "  var busy = current.readyState !== 'complete' || current.pending > 0 || current.jQueryActive > 0 || current.animations > 0;" +
+            "  if (busy) { probe.lastActivity = performance.now(); }" +
+            "  current.quiet = !busy && current.idle >= quietMillis;" +
+            "  var elapsed = performance.now() - start;" +
+            "  if (current.quiet || elapsed >= maxMillis) { callback(current); return; }" +
+            "  setTimeout(check, busy ? 25 : Math.min(Math.max(quietMillis - current.idle, 1), maxMillis - elapsed));" +
+            "};" +
+            "check();";
+
+    private ReadinessProbe() {
+    }
+
+    //Blocks until the page is quiet, TimeoutException with the last page state otherwise
+    public static void waitForQuiet(WebDriver driver, long quietMillis, Duration timeout) {
+        if (!ActionMetrics.ENABLED) {
+            waitUntilQuiet(driver, quietMillis, timeout);
+            return;
+        }
+        long start = System.nanoTime();
+        try {
+            waitUntilQuiet(driver, quietMillis, timeout);
+        } finally {
+            ActionMetrics.recordWaitTime(System.nanoTime() - start);
+        }
+    }
+
+    private static void waitUntilQuiet(WebDriver driver, long quietMillis, Duration timeout) {
+        JavascriptExecutor jsExecutor = (JavascriptExecutor) driver;
+        long deadline = System.nanoTime() + timeout.toNanos();
+        Object state = null;
+        while (true) {
+            long remainingMillis = Math.max(0, (deadline - System.nanoTime()) / 1_000_000);
+            try {
+                state = jsExecutor.executeAsyncScript(WAIT_SCRIPT, quietMillis, Math.min(remainingMillis, MAX_CALL_MILLIS));
+                if (state instanceof Map && Boolean.TRUE.equals(((Map<?, ?>) state).get("quiet"))) {
+                    return;
+                }
+            } catch (ScriptTimeoutException e) {
+                //Script timeout set below MAX_CALL_MILLIS: the next call starts over with a fresh budget
+                state = e.getMessage();
+            } catch (WebDriverException e) {
+                //Navigation in progress destroyed the page the probe was running in; the new page gets its own probe
+                if (!isNavigationError(e)) {
+                    throw e;
+                }
+                state = e.getMessage();
+            }
+            if (System.nanoTime() >= deadline) {
+                throw new TimeoutException("Page not quiet for " + quietMillis + " ms after " + timeout.toMillis()
+                        + " ms, last state: " + state);
+            }
+        }
+    }
+
+    private static boolean isNavigationError(WebDriverException e) {
+        String message = String.valueOf(e.getMessage()).toLowerCase();
+        return message.contains("unload") || message.contains("navigat") || message.contains("context was destroyed")
+                || message.contains("document unloaded");
+    }
+}
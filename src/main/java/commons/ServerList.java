@@ -1,5 +1,5 @@
 package commons;
 
 public enum ServerList {
-    DEV, TEST, STAGING, LIVE;
+    DEV, TEST, STAGING, LIVE, LOCAL;
 }
@@ -0,0 +1,99 @@
+package commons;
+
+import org.openqa.selenium.NoSuchSessionException;
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.WrapsDriver;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+public class SessionDriver implements InvocationHandler {
+    //Driver handed to test classes by getBrowserEnvironment: every call goes to the session currently bound to it,
+    //so page objects built in @BeforeClass keep working when RetryAnalyzer resets or replaces the session
+    //Navigation, frame/window switches and window closes through it are counted in the session's WindowRegistry,
+    //which is what ends the BasePage element cache
+
+    private volatile DriverSession session;
+
+    private SessionDriver(DriverSession session) {
+        this.session = session;
+    }
+
+    static WebDriver create(DriverSession session) {
+        Set<Class<?>> interfaces = new LinkedHashSet<>();
+        for (Class<?> type = session.getDriver().getClass(); type != null; type = type.getSuperclass()) {
+            addInterfaces(interfaces, type);
+        }
+        interfaces.add(WrapsDriver.class);
+        return (WebDriver) Proxy.newProxyInstance(SessionDriver.class.getClassLoader(), interfaces.toArray(new Class<?>[0]),
+                new SessionDriver(session));
+    }
+
+    private static void addInterfaces(Set<Class<?>> interfaces, Class<?> type) {
+        for (Class<?> implemented : type.getInterfaces()) {
+            if (interfaces.add(implemented)) {
+                addInterfaces(interfaces, implemented);
+            }
+        }
+    }
+
+    public static boolean isSessionDriver(WebDriver driver) {
+        return driver != null && Proxy.isProxyClass(driver.getClass())
+                && Proxy.getInvocationHandler(driver) instanceof SessionDriver;
+    }
+
+    //The session's own driver behind a SessionDriver, any other driver unchanged
+    public static WebDriver unwrap(WebDriver driver) {
+        if (isSessionDriver(driver)) {
+            return ((SessionDriver) Proxy.getInvocationHandler(driver)).getCurrentDriver();
+        }
+        return driver;
+    }
+
+    static void follow(WebDriver driver, DriverSession session) {
+        ((SessionDriver) Proxy.getInvocationHandler(driver)).session = session;
+    }
+
+    private WebDriver getCurrentDriver() {
+        DriverSession current = session;
+        if (current == null) {
+            throw new NoSuchSessionException("The browser session of this test class was released");
+        }
+        return current.getDriver();
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+        switch (method.getName()) {
+            case "equals":
+                return args != null && args.length == 1 && proxy == args[0];
+            case "hashCode":
+                return System.identityHashCode(proxy);
+            case "toString":
+                return "SessionDriver(" + session + ")";
+            case "getWrappedDriver":
+                return getCurrentDriver();
+            case "get":
+            case "navigate":
+            case "switchTo":
+            case "close":
+                //Counted before the call: navigate()/switchTo() only return the object that then does it
+                WindowRegistry.of(getCurrentDriver()).markNavigation();
+                return invokeCurrent(method, args);
+            default:
+                return invokeCurrent(method, args);
+        }
+    }
+
+    private Object invokeCurrent(Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(getCurrentDriver(), args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+}
@@ -0,0 +1,253 @@
+package commons;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.openqa.selenium.Cookie;
+import org.openqa.selenium.JavascriptExecutor;
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.json.Json;
+import org.openqa.selenium.json.JsonException;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
+
+public class SessionStateCache {
+    //Logged-in browser state (cookies + localStorage + sessionStorage) per role and server:
+    //the login flow runs once, later sessions get the state injected; kept on disk for the next runs
+    //Expiry: too old or all cookies expired locally, or the app no longer accepts it (isLoggedIn after restore)
+
+    private static final Logger log = LogManager.getLogger(SessionStateCache.class);
+    private static final Json json = new Json();
+
+    private static final String READ_STORAGE_SCRIPT =
+            "var read = function(storage) { var items = {};" +
+            "  for (var i = 0; i < storage.length; i++) { var key = storage.key(i); items[key] = storage.getItem(key); }" +
+            "  return items; };" +
+            "return { local: read(window.localStorage), session: read(window.sessionStorage) };";
+    private static final String WRITE_STORAGE_SCRIPT =
+            "var write = function(storage, items) { for (var key in items) { storage.setItem(key, items[key]); } };" +
+            "write(window.localStorage, arguments[0]); write(window.sessionStorage, arguments[1]);";
+
+    private static final Map<String, SessionState> states = new ConcurrentHashMap<>();
+    private static final Map<String, Object> locks = new ConcurrentHashMap<>();
+
+    private SessionStateCache() {
+    }
+
+    public static class SessionState {
+        private final List<Map<String, Object>> cookies;
+        private final Map<String, Object> localStorage;
+        private final Map<String, Object> sessionStorage;
+        private final long createdMillis;
+
+        SessionState(List<Map<String, Object>> cookies, Map<String, Object> localStorage, Map<String, Object> sessionStorage, long createdMillis) {
+            this.cookies = cookies;
+            this.localStorage = localStorage;
+            this.sessionStorage = sessionStorage;
+            this.createdMillis = createdMillis;
+        }
+
+        public long getCreatedMillis() {
+            return createdMillis;
+        }
+
+        //Only a server round trip can tell for sure; this catches what is already known to be stale
+        public boolean isExpired() {
+            long now = System.currentTimeMillis();
+            if (now - createdMillis > GlobalConstants.SESSION_STATE_MAX_AGE_MINUTES * 60_000) {
+                return true;
+            }
+            return !cookies.isEmpty() && getLiveCookies().isEmpty();
+        }
+
+        List<Cookie> getLiveCookies() {
+            List<Cookie> live = new ArrayList<>();
+            long now = System.currentTimeMillis();
+            for (Map<String, Object> cookie : cookies) {
+                Cookie restored = toCookie(cookie);
+                if (restored.getExpiry() == null || restored.getExpiry().getTime() > now) {
+                    live.add(restored);
+                }
+            }
+            return live;
+        }
+
+        Map<String, Object> toMap() {
+            Map<String, Object> map = new LinkedHashMap<>();
+            map.put("createdMillis", createdMillis);
+            map.put("cookies", cookies);
+            map.put("localStorage", localStorage);
+            map.put("sessionStorage", sessionStorage);
+            return map;
+        }
+
+        @SuppressWarnings("unchecked")
+        static SessionState fromMap(Map<String, Object> map) {
+            return new SessionState(
+                    (List<Map<String, Object>>) map.getOrDefault("cookies", Collections.emptyList()),
+                    (Map<String, Object>) map.getOrDefault("localStorage", Collections.emptyMap()),
+                    (Map<String, Object>) map.getOrDefault("sessionStorage", Collections.emptyMap()),
+                    ((Number) map.getOrDefault("createdMillis", 0L)).longValue());
+        }
+    }
+
+    //Make the session logged in as role: restore the cached state if the app still accepts it, else run loginFlow
+    //and cache the result. Classes asking for the same role wait for one login instead of all logging in at once
+    public static void login(WebDriver driver, String role, ServerList server, String baseUrl, Runnable loginFlow, Predicate<WebDriver> isLoggedIn) {
+        String key = getKey(role, server);
+        synchronized (locks.computeIfAbsent(key, k -> new Object())) {
+            SessionState state = get(role, server);
+            if (state != null) {
+                restore(driver, state, baseUrl);
+                if (isLoggedIn.test(driver)) {
+                    log.info("Restored cached '" + role + "' state on " + server);
+                    return;
+                }
+                log.info("Cached '" + role + "' state on " + server + " was rejected by the app, logging in again");
+                invalidate(role, server);
+                driver.manage().deleteAllCookies();
+            }
+
+            loginFlow.run();
+            if (!isLoggedIn.test(driver)) {
+                throw new IllegalStateException("Login flow for role '" + role + "' on " + server + " did not log in");
+            }
+            put(role, server, capture(driver));
+        }
+    }
+
+    public static SessionState get(String role, ServerList server) {
+        String key = getKey(role, server);
+        SessionState state = states.computeIfAbsent(key, SessionStateCache::load);
+        if (state != null && state.isExpired()) {
+            invalidate(role, server);
+            return null;
+        }
+        return state;
+    }
+
+    public static void put(String role, ServerList server, SessionState state) {
+        String key = getKey(role, server);
+        states.put(key, state);
+        save(key, state);
+    }
+
+    public static void invalidate(String role, ServerList server) {
+        String key = getKey(role, server);
+        states.remove(key);
+        try {
+            Files.deleteIfExists(getFile(key));
+        } catch (IOException e) {
+            log.warn("Cannot delete session state " + getFile(key) + ": " + e.getMessage());
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    public static SessionState capture(WebDriver driver) {
+        List<Map<String, Object>> cookies = new ArrayList<>();
+        for (Cookie cookie : driver.manage().getCookies()) {
+            cookies.add(toMap(cookie));
+        }
+        Map<String, Object> localStorage = Collections.emptyMap();
+        Map<String, Object> sessionStorage = Collections.emptyMap();
+        try {
+            Map<String, Object> storage = (Map<String, Object>) ((JavascriptExecutor) driver).executeScript(READ_STORAGE_SCRIPT);
+            localStorage = (Map<String, Object>) storage.get("local");
+            sessionStorage = (Map<String, Object>) storage.get("session");
+        } catch (UnsupportedOperationException e) {
+            //HtmlUnit without JavaScript: cookies only
+        }
+        return new SessionState(cookies, localStorage, sessionStorage, System.currentTimeMillis());
+    }
+
+    //Cookies and storage belong to the origin, so the session is put on baseUrl first, then reloaded with the state
+    public static void restore(WebDriver driver, SessionState state, String baseUrl) {
+        if (baseUrl != null && !driver.getCurrentUrl().startsWith(baseUrl)) {
+            driver.get(baseUrl);
+        }
+        for (Cookie cookie : state.getLiveCookies()) {
+            driver.manage().addCookie(cookie);
+        }
+        if (!state.localStorage.isEmpty() || !state.sessionStorage.isEmpty()) {
+            try {
+                ((JavascriptExecutor) driver).executeScript(WRITE_STORAGE_SCRIPT, state.localStorage, state.sessionStorage);
+            } catch (UnsupportedOperationException e) {
+                //HtmlUnit without JavaScript has no storage
+            }
+        }
+        driver.navigate().refresh();
+    }
+
+    private static Map<String, Object> toMap(Cookie cookie) {
+        Map<String, Object> map = new LinkedHashMap<>();
+        map.put("name", cookie.getName());
+        map.put("value", cookie.getValue());
+        map.put("domain", cookie.getDomain());
+        map.put("path", cookie.getPath());
+        map.put("expiry", cookie.getExpiry() == null ? null : cookie.getExpiry().getTime());
+        map.put("secure", cookie.isSecure());
+        map.put("httpOnly", cookie.isHttpOnly());
+        map.put("sameSite", cookie.getSameSite());
+        return map;
+    }
+
+    private static Cookie toCookie(Map<String, Object> map) {
+        Object expiry = map.get("expiry");
+        Cookie.Builder builder = new Cookie.Builder((String) map.get("name"), (String) map.get("value"))
+                .domain((String) map.get("domain"))
+                .path((String) map.get("path"))
+                .expiresOn(expiry == null ? null : new Date(((Number) expiry).longValue()))
+                .isSecure(Boolean.TRUE.equals(map.get("secure")))
+                .isHttpOnly(Boolean.TRUE.equals(map.get("httpOnly")));
+        if (map.get("sameSite") != null) {
+            builder.sameSite((String) map.get("sameSite"));
+        }
+        return builder.build();
+    }
+
+    private static String getKey(String role, ServerList server) {
+        return role + "@" + server.name();
+    }
+
+    private static Path getFile(String key) {
+        return Paths.get(GlobalConstants.SESSION_STATE_DIR, key.replaceAll("[^A-Za-z0-9@._-]", "_") + ".json");
+    }
+
+    private static SessionState load(String key) {
+        Path file = getFile(key);
+        if (!Files.isRegularFile(file)) {
+            return null;
+        }
+        try {
+            return SessionState.fromMap(json.toType(new String(Files.readAllBytes(file), StandardCharsets.UTF_8), Json.MAP_TYPE));
+        } catch (IOException | JsonException | ClassCastException e) {
+            log.warn("Ignoring unreadable session state " + file + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    //Write + rename, so a parallel run never reads half a file
+    private static void save(String key, SessionState state) {
+        Path file = getFile(key);
+        try {
+            Files.createDirectories(file.getParent());
+            Path temp = Files.createTempFile(file.getParent(), file.getFileName().toString(), ".tmp");
+            Files.write(temp, json.toJson(state.toMap()).getBytes(StandardCharsets.UTF_8));
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            log.warn("Cannot write session state " + file + ": " + e.getMessage());
+        }
+    }
+}
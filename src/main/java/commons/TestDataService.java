@@ -0,0 +1,289 @@
+package commons;
+
+import java.time.Year;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+public class TestDataService {
+    //Unique test data for parallel threads and forked JVMs: every unique value is RUN_PREFIX + a sequence number
+    //RUN_PREFIX = start time + pid + shard, so two JVMs never share it; the sequence makes it unique inside the JVM
+    //Random parts (names, cities...) use ThreadLocalRandom, no shared Random to contend on
+
+    public static final String RUN_PREFIX = Long.toString(System.currentTimeMillis(), 36)
+            + Long.toString(ProcessHandle.current().pid(), 36)
+            + (GlobalConstants.SHARD_INDEX >= 0 ? "s" + GlobalConstants.SHARD_INDEX : "");
+
+    private static final int POOL_SIZE = GlobalConstants.TEST_DATA_POOL_SIZE;
+    private static final AtomicLong sequence = new AtomicLong();
+    private static final ExecutorService refiller = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "test-data-refill");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private static final String[] FIRST_NAMES = {"John", "Mary", "David", "Linda", "Michael", "Susan", "James", "Karen",
+            "Robert", "Nancy", "William", "Lisa", "Thomas", "Emma", "Daniel", "Olivia"};
+    private static final String[] LAST_NAMES = {"Smith", "Johnson", "Brown", "Taylor", "Anderson", "Thomas", "Jackson",
+            "White", "Harris", "Martin", "Thompson", "Garcia", "Clark", "Lewis", "Walker", "Young"};
+    private static final String[] CITIES = {"New York", "Los Angeles", "Chicago", "Houston", "Phoenix", "Seattle",
+            "Denver", "Boston", "Austin", "Portland"};
+    private static final String[] STREETS = {"Main St", "Oak Ave", "Pine St", "Maple Ave", "Cedar Rd", "Elm St",
+            "Lake View Dr", "Hill Rd"};
+
+    //Declared after the name lists: the first bulk fill starts right away on the refill thread
+    private static final Pool<User> users = new Pool<>(TestDataService::newUser);
+    private static final Pool<Address> addresses = new Pool<>(TestDataService::newAddress);
+    private static final Pool<Card> cards = new Pool<>(TestDataService::newCard);
+
+    private TestDataService() {
+    }
+
+    //Pre-generated entities: tests take one without waiting, a background thread refills in bulk at half capacity
+    private static class Pool<T> {
+        private final Supplier<T> factory;
+        private final Queue<T> items = new ConcurrentLinkedQueue<>();
+        private final AtomicLong size = new AtomicLong();
+        private final AtomicBoolean refilling = new AtomicBoolean();
+
+        Pool(Supplier<T> factory) {
+            this.factory = factory;
+            refilling.set(true);
+            refiller.execute(this::refill);
+        }
+
+        T next() {
+            T item = items.poll();
+            if (item != null) {
+                size.decrementAndGet();
+            } else {
+                //Pool drained faster than the refill: generate on the caller thread rather than block
+                item = factory.get();
+            }
+            if (size.get() < POOL_SIZE / 2 && refilling.compareAndSet(false, true)) {
+                refiller.execute(this::refill);
+            }
+            return item;
+        }
+
+        private void refill() {
+            try {
+                while (size.get() < POOL_SIZE) {
+                    items.add(factory.get());
+                    size.incrementAndGet();
+                }
+            } finally {
+                refilling.set(false);
+            }
+        }
+    }
+
+    public static class User {
+        private final String firstName;
+        private final String lastName;
+        private final String email;
+        private final String password;
+        private final String company;
+
+        User(String firstName, String lastName, String email, String password, String company) {
+            this.firstName = firstName;
+            this.lastName = lastName;
+            this.email = email;
+            this.password = password;
+            this.company = company;
+        }
+
+        public String getFirstName() {
+            return firstName;
+        }
+
+        public String getLastName() {
+            return lastName;
+        }
+
+        public String getEmail() {
+            return email;
+        }
+
+        public String getPassword() {
+            return password;
+        }
+
+        public String getCompany() {
+            return company;
+        }
+    }
+
+    public static class Address {
+        private final String firstName;
+        private final String lastName;
+        private final String email;
+        private final String country;
+        private final String city;
+        private final String address1;
+        private final String zipCode;
+        private final String phoneNumber;
+
+        Address(String firstName, String lastName, String email, String country, String city, String address1,
+                String zipCode, String phoneNumber) {
+            this.firstName = firstName;
+            this.lastName = lastName;
+            this.email = email;
+            this.country = country;
+            this.city = city;
+            this.address1 = address1;
+            this.zipCode = zipCode;
+            this.phoneNumber = phoneNumber;
+        }
+
+        public String getFirstName() {
+            return firstName;
+        }
+
+        public String getLastName() {
+            return lastName;
+        }
+
+        public String getEmail() {
+            return email;
+        }
+
+        public String getCountry() {
+            return country;
+        }
+
+        public String getCity() {
+            return city;
+        }
+
+        public String getAddress1() {
+            return address1;
+        }
+
+        public String getZipCode() {
+            return zipCode;
+        }
+
+        public String getPhoneNumber() {
+            return phoneNumber;
+        }
+    }
+
+    public static class Card {
+        private final String holderName;
+        private final String number;
+        private final String expireMonth;
+        private final String expireYear;
+        private final String cardCode;
+
+        Card(String holderName, String number, String expireMonth, String expireYear, String cardCode) {
+            this.holderName = holderName;
+            this.number = number;
+            this.expireMonth = expireMonth;
+            this.expireYear = expireYear;
+            this.cardCode = cardCode;
+        }
+
+        public String getHolderName() {
+            return holderName;
+        }
+
+        public String getNumber() {
+            return number;
+        }
+
+        public String getExpireMonth() {
+            return expireMonth;
+        }
+
+        public String getExpireYear() {
+            return expireYear;
+        }
+
+        public String getCardCode() {
+            return cardCode;
+        }
+    }
+
+    public static User nextUser() {
+        return users.next();
+    }
+
+    public static Address nextAddress() {
+        return addresses.next();
+    }
+
+    public static Card nextCard() {
+        return cards.next();
+    }
+
+    //Unique across threads and JVMs of this run and of earlier runs
+    public static String uniqueId() {
+        return RUN_PREFIX + "x" + Long.toString(sequence.incrementAndGet(), 36);
+    }
+
+    public static String uniqueEmail() {
+        return "automation" + uniqueId() + "@gmail.com";
+    }
+
+    public static int randomInt(int bound) {
+        return ThreadLocalRandom.current().nextInt(bound);
+    }
+
+    private static String pick(String[] values) {
+        return values[ThreadLocalRandom.current().nextInt(values.length)];
+    }
+
+    private static String digits(int count) {
+        StringBuilder digits = new StringBuilder(count);
+        for (int i = 0; i < count; i++) {
+            digits.append((char) ('0' + ThreadLocalRandom.current().nextInt(10)));
+        }
+        return digits.toString();
+    }
+
+    private static User newUser() {
+        String id = uniqueId();
+        return new User(pick(FIRST_NAMES), pick(LAST_NAMES), "automation" + id + "@gmail.com",
+                "Pw" + digits(4) + "!" + id, "Company " + id);
+    }
+
+    private static Address newAddress() {
+        String firstName = pick(FIRST_NAMES);
+        String lastName = pick(LAST_NAMES);
+        return new Address(firstName, lastName, uniqueEmail(), "United States", pick(CITIES),
+                (1 + randomInt(9999)) + " " + pick(STREETS), digits(5), "555" + digits(7));
+    }
+
+    //Visa-like 16 digit number with a valid Luhn check digit, expiry 1 to 5 years ahead
+    private static Card newCard() {
+        String number = "4" + digits(14);
+        number += luhnCheckDigit(number);
+        int month = 1 + randomInt(12);
+        int year = Year.now().getValue() + 1 + randomInt(5);
+        return new Card(pick(FIRST_NAMES) + " " + pick(LAST_NAMES), number, String.format("%02d", month),
+                String.valueOf(year), digits(3));
+    }
+
+    static int luhnCheckDigit(String partialNumber) {
+        int sum = 0;
+        boolean doubleDigit = true;
+        for (int i = partialNumber.length() - 1; i >= 0; i--) {
+            int digit = partialNumber.charAt(i) - '0';
+            if (doubleDigit) {
+                digit *= 2;
+                if (digit > 9) {
+                    digit -= 9;
+                }
+            }
+            sum += digit;
+            doubleDigit = !doubleDigit;
+        }
+        return (10 - sum % 10) % 10;
+    }
+}
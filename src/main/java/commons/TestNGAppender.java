@@ -1,5 +1,6 @@
 package commons;
 
+import org.apache.logging.log4j.ThreadContext;
 import org.apache.logging.log4j.core.*;
 import org.apache.logging.log4j.core.appender.AbstractAppender;
 import org.apache.logging.log4j.core.config.Property;
@@ -8,12 +9,71 @@ import org.apache.logging.log4j.core.config.plugins.PluginAttribute;
 import org.apache.logging.log4j.core.config.plugins.PluginElement;
 import org.apache.logging.log4j.core.config.plugins.PluginFactory;
 import org.apache.logging.log4j.core.layout.PatternLayout;
+import org.testng.ITestResult;
 import org.testng.Reporter;
+import reportConfig.ResultStreamWriter;
 
 import java.io.Serializable;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 @Plugin(name = "TestNGAppender", category = Core.CATEGORY_NAME, elementType = Appender.ELEMENT_TYPE, printObject = true)
 public class TestNGAppender extends AbstractAppender {
+	// Log events are buffered per test result and handed to Reporter in one call when the test method ends.
+	// The test is identified through ThreadContext. Keep this appender synchronous (not behind <Async>): every event
+	// of a test is then appended before the test is flushed, and the buffer is dropped when it is.
+
+	public static final String TEST_RESULT_KEY = "testResult";
+
+	private static final AtomicLong testCounter = new AtomicLong();
+	private static final Map<String, TestBuffer> buffers = new ConcurrentHashMap<>();
+	private static volatile int maxLinesPerTest = 1000;
+
+	// Ring buffer of the last lines of one test, older lines are dropped and counted
+	private static class TestBuffer {
+		private String[] lines;
+		private int start;
+		private int size;
+		private long dropped;
+
+		TestBuffer(int capacity) {
+			this.lines = new String[capacity];
+		}
+
+		// false once the test has been flushed
+		synchronized boolean add(String line) {
+			if (lines == null) {
+				return false;
+			}
+			if (size == lines.length) {
+				lines[start] = line;
+				start = (start + 1) % lines.length;
+				dropped++;
+			} else {
+				lines[(start + size) % lines.length] = line;
+				size++;
+			}
+			return true;
+		}
+
+		synchronized String close() {
+			String output = null;
+			if (size > 0 || dropped > 0) {
+				StringBuilder text = new StringBuilder(size * 96);
+				if (dropped > 0) {
+					text.append("... ").append(dropped).append(" earlier log lines dropped\n");
+				}
+				for (int i = 0; i < size; i++) {
+					text.append(lines[(start + i) % lines.length]);
+				}
+				output = text.toString();
+			}
+			lines = null;
+			size = 0;
+			return output;
+		}
+	}
 
 	protected TestNGAppender(String name, Filter filter, Layout<? extends Serializable> layout) {
 		super(name, filter, layout, true, Property.EMPTY_ARRAY);
@@ -23,14 +83,51 @@ public class TestNGAppender extends AbstractAppender {
 		Reporter.log(logMessage + "<br>");
 	}
 
+	// Called on the test thread before a test or configuration method runs
+	public static void bindTestResult(ITestResult result) {
+		String key = String.valueOf(testCounter.incrementAndGet());
+		buffers.put(key, new TestBuffer(maxLinesPerTest));
+		result.setAttribute(TEST_RESULT_KEY, key);
+		ThreadContext.put(TEST_RESULT_KEY, key);
+	}
+
+	// Called on the test thread after the method, with Reporter's current result set to it
+	public static void flushTestResult(ITestResult result) {
+		ThreadContext.remove(TEST_RESULT_KEY);
+		Object key = result.getAttribute(TEST_RESULT_KEY);
+		TestBuffer buffer = key == null ? null : buffers.remove(key.toString());
+		if (buffer == null) {
+			return;
+		}
+		String output = buffer.close();
+		if (output != null) {
+			if (isStreamed(result)) {
+				// Written with the test's result line, then dropped: the TestNG report does not grow with the run
+				result.setAttribute(ResultStreamWriter.LOG_ATTRIBUTE, output);
+			} else {
+				Reporter.log(output);
+			}
+		}
+	}
+
+	private static boolean isStreamed(ITestResult result) {
+		return GlobalConstants.RESULTS_STREAM && GlobalConstants.RESULTS_STREAM_LOGS && result.getMethod().isTest();
+	}
+
 	@Override
 	public void append(LogEvent event) {
-		Reporter.log(event.getMessage().getFormattedMessage());
+		String line = getLayout().toSerializable(event).toString();
+		String key = event.getContextData().getValue(TEST_RESULT_KEY);
+		TestBuffer buffer = key == null ? null : buffers.get(key);
+		// No test bound (or flushed by another thread in the meantime): the current Reporter output
+		if (buffer == null || !buffer.add(line)) {
+			Reporter.log(line);
+		}
 	}
 
 	@PluginFactory
 	public static TestNGAppender createAppender(@PluginAttribute("name") String name, @PluginElement("Layout") Layout<? extends Serializable> layout, @PluginElement("Filter") final Filter filter,
-			@PluginAttribute("otherAttribute") String otherAttribute) {
+			@PluginAttribute("otherAttribute") String otherAttribute, @PluginAttribute(value = "maxLinesPerTest", defaultInt = 1000) int maxLines) {
 		if (name == null) {
 			LOGGER.error("No name provided for TestAppender");
 			return null;
@@ -38,7 +135,8 @@ public class TestNGAppender extends AbstractAppender {
 		if (layout == null) {
 			layout = PatternLayout.createDefaultLayout();
 		}
+		maxLinesPerTest = Math.max(1, maxLines);
 		return new TestNGAppender(name, filter, layout);
 	}
 
-}
\ No newline at end of file
+}
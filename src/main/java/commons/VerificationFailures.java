@@ -2,34 +2,40 @@ package commons;
 
 import org.testng.ITestResult;
 
-import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 public class
-VerificationFailures extends HashMap<ITestResult, List<Throwable>> {
+VerificationFailures extends ConcurrentHashMap<ITestResult, List<Throwable>> {
+	// Safe under parallel verify* calls: bins are locked independently and the per-test list is copy-on-write
+	// (a test has a handful of failures, reads far outnumber writes)
+
 	private VerificationFailures() {
 		super();
 	}
 
 	public static VerificationFailures getFailures() {
-		if (failures == null) {
-			failures = new VerificationFailures();
-		}
 		return failures;
 	}
 
+	// Shared immutable empty list when the test has no failure
 	public List<Throwable> getFailuresForTest(ITestResult result) {
 		List<Throwable> exceptions = get(result);
-		return exceptions == null ? new ArrayList<Throwable>() : exceptions;
+		return exceptions == null ? Collections.emptyList() : exceptions;
 	}
 
 	public void addFailureForTest(ITestResult result, Throwable throwable) {
-		List<Throwable> exceptions = getFailuresForTest(result);
-		exceptions.add(throwable);
-		put(result, exceptions);
+		computeIfAbsent(result, key -> new CopyOnWriteArrayList<>()).add(throwable);
+	}
+
+	// Called once the failures are merged into the result, so finished tests are not kept for the whole run
+	public List<Throwable> removeFailuresForTest(ITestResult result) {
+		List<Throwable> exceptions = remove(result);
+		return exceptions == null ? Collections.emptyList() : exceptions;
 	}
 
 	private static final long serialVersionUID = 1L;
-	private static VerificationFailures failures;
-}
\ No newline at end of file
+	private static final VerificationFailures failures = new VerificationFailures();
+}
@@ -0,0 +1,141 @@
+package commons;
+
+import org.openqa.selenium.NoSuchElementException;
+import org.openqa.selenium.StaleElementReferenceException;
+import org.openqa.selenium.TimeoutException;
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.support.ui.ExpectedCondition;
+import org.openqa.selenium.support.ui.ExpectedConditions;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+
+public class WaitEngine {
+    //Explicit polling wait used instead of implicit wait
+    //Polls fast at first (most conditions are already true), then backs off so long waits do not flood the driver
+
+    private final WebDriver driver;
+    private Duration timeout = Duration.ofSeconds(GlobalConstants.LONG_TIMEOUT);
+    private long initialPollMillis = GlobalConstants.POLLING_INITIAL_MILLIS;
+    private double pollMultiplier = GlobalConstants.POLLING_MULTIPLIER;
+    private long maxPollMillis = GlobalConstants.POLLING_MAX_MILLIS;
+    private final List<Class<? extends Throwable>> ignoredExceptions = new ArrayList<>();
+    private String message;
+
+    private WaitEngine(WebDriver driver) {
+        this.driver = driver;
+        ignoredExceptions.add(NoSuchElementException.class);
+        ignoredExceptions.add(StaleElementReferenceException.class);
+    }
+
+    public static WaitEngine on(WebDriver driver) {
+        return new WaitEngine(driver);
+    }
+
+    public WaitEngine withTimeout(Duration timeout) {
+        this.timeout = timeout;
+        return this;
+    }
+
+    public WaitEngine withTimeout(long timeoutInSecond) {
+        return withTimeout(Duration.ofSeconds(timeoutInSecond));
+    }
+
+    public WaitEngine withBackoff(long initialPollMillis, double pollMultiplier, long maxPollMillis) {
+        this.initialPollMillis = initialPollMillis;
+        this.pollMultiplier = pollMultiplier;
+        this.maxPollMillis = maxPollMillis;
+        return this;
+    }
+
+    public WaitEngine ignoring(Class<? extends Throwable> exceptionType) {
+        ignoredExceptions.add(exceptionType);
+        return this;
+    }
+
+    public WaitEngine withMessage(String message) {
+        this.message = message;
+        return this;
+    }
+
+    //Wait until the condition returns a non-null, non-false value; TimeoutException after the timeout
+    //The condition is always evaluated at least once, so a zero timeout is a single check
+    public <T> T until(Function<? super WebDriver, T> condition) {
+        if (!ActionMetrics.ENABLED) {
+            return poll(condition);
+        }
+        long start = System.nanoTime();
+        try {
+            return poll(condition);
+        } finally {
+            ActionMetrics.recordWaitTime(System.nanoTime() - start);
+        }
+    }
+
+    private <T> T poll(Function<? super WebDriver, T> condition) {
+        long deadline = System.nanoTime() + timeout.toNanos();
+        long pollMillis = initialPollMillis;
+        RuntimeException lastException = null;
+        while (true) {
+            try {
+                T value = condition.apply(driver);
+                if (value != null && !Boolean.FALSE.equals(value)) {
+                    return value;
+                }
+            } catch (RuntimeException e) {
+                if (!isIgnored(e)) {
+                    throw e;
+                }
+                lastException = e;
+            }
+
+            long remainingMillis = (deadline - System.nanoTime()) / 1_000_000;
+            if (remainingMillis <= 0) {
+                String timeoutMessage = "Expected condition failed: " + (message == null ? condition : message)
+                        + " (tried for " + timeout.toMillis() + " ms)";
+                throw new TimeoutException(timeoutMessage, lastException);
+            }
+            sleep(Math.min(pollMillis, remainingMillis));
+            pollMillis = Math.min((long) (pollMillis * pollMultiplier), maxPollMillis);
+        }
+    }
+
+    //Same as until() but returns false instead of throwing on timeout
+    public boolean isSatisfied(Function<? super WebDriver, ?> condition) {
+        try {
+            until(condition);
+            return true;
+        } catch (TimeoutException e) {
+            return false;
+        }
+    }
+
+    //Conditions can be combined: all of them / any of them must hold in the same poll
+    public static ExpectedCondition<Boolean> allOf(ExpectedCondition<?>... conditions) {
+        return ExpectedConditions.and(conditions);
+    }
+
+    public static ExpectedCondition<Boolean> anyOf(ExpectedCondition<?>... conditions) {
+        return ExpectedConditions.or(conditions);
+    }
+
+    private boolean isIgnored(RuntimeException e) {
+        for (Class<? extends Throwable> ignored : ignoredExceptions) {
+            if (ignored.isInstance(e)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while waiting", e);
+        }
+    }
+}
@@ -0,0 +1,328 @@
+package commons;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.openqa.selenium.NoSuchWindowException;
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.WrapsDriver;
+import org.openqa.selenium.bidi.HasBiDi;
+import org.openqa.selenium.bidi.browsingcontext.BrowsingContext;
+import org.openqa.selenium.bidi.browsingcontext.BrowsingContextInfo;
+import org.openqa.selenium.bidi.module.BrowsingContextInspector;
+import org.openqa.selenium.bidi.module.Script;
+import org.openqa.selenium.bidi.script.EvaluateResult;
+import org.openqa.selenium.bidi.script.EvaluateResultSuccess;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+
+public class WindowRegistry {
+    //Windows/tabs of one session with their last known title and URL, in opening order
+    //BiDi (-Dwindow.bidi=true, Chrome/Edge/Firefox): browsingContext events add, update and remove windows as they
+    //change and titles are read off the test thread, so a switch by title/URL is the switch round trip only
+    //Without BiDi: one getWindowHandles per lookup, only windows never seen before are visited for title + URL;
+    //a miss (e.g. a known window navigated since) visits every window once and retries. The cached title/URL may be
+    //old (a click navigated that window), so the window switched to is read again to confirm it: getWindowHandles,
+    //switch, getTitle, getCurrentUrl. That is 4 round trips per switch however many windows are open, no fewer than
+    //visiting every window with two or three open; the saving is the BiDi mode's
+    //Also counts navigations and window/frame switches of the session (SessionDriver and the switches below), so
+    //BasePage knows when its cached elements belong to another document
+
+    private static final Logger log = LogManager.getLogger(WindowRegistry.class);
+    //Removed by DriverSession.quit (a registry holds its driver, so weak keys would never be cleared)
+    private static final Map<WebDriver, WindowRegistry> registries = new ConcurrentHashMap<>();
+    private static final ExecutorService titleReader = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "window-title-reader");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final WebDriver driver;
+    private final Map<String, WindowInfo> windows = new ConcurrentHashMap<>();
+    private final AtomicLong openedCounter = new AtomicLong();
+    private final AtomicLong navigations = new AtomicLong();
+    private WebDriver bidiDriver;
+    private BrowsingContextInspector inspector;
+    private Script script;
+
+    public static class WindowInfo {
+        private final String handle;
+        private final long openedOrder;
+        private volatile String title;
+        private volatile String url;
+
+        WindowInfo(String handle, long openedOrder) {
+            this.handle = handle;
+            this.openedOrder = openedOrder;
+        }
+
+        public String getHandle() {
+            return handle;
+        }
+
+        public String getTitle() {
+            return title;
+        }
+
+        public String getUrl() {
+            return url;
+        }
+
+        @Override
+        public String toString() {
+            return handle + " '" + title + "' " + url;
+        }
+    }
+
+    private WindowRegistry(WebDriver driver) {
+        this.driver = driver;
+        if (GlobalConstants.WINDOW_BIDI) {
+            startBiDi();
+        }
+    }
+
+    //Keyed by the session's own driver: a test class's SessionDriver gets the registry of its current session
+    public static WindowRegistry of(WebDriver driver) {
+        return registries.computeIfAbsent(SessionDriver.unwrap(driver), WindowRegistry::new);
+    }
+
+    //Called when the session quits
+    public static void remove(WebDriver driver) {
+        WindowRegistry registry = registries.remove(driver);
+        if (registry != null) {
+            registry.close();
+        }
+    }
+
+    void markNavigation() {
+        navigations.incrementAndGet();
+    }
+
+    //Changes on every navigation or window/frame switch of the session that went through the framework
+    long getNavigation() {
+        return navigations.get();
+    }
+
+    public boolean isBiDi() {
+        return inspector != null;
+    }
+
+    private void startBiDi() {
+        WebDriver target = driver instanceof WrapsDriver ? ((WrapsDriver) driver).getWrappedDriver() : driver;
+        if (!(target instanceof HasBiDi) || !((HasBiDi) target).maybeGetBiDi().isPresent()) {
+            log.info("Window registry without BiDi: " + target.getClass().getSimpleName() + " session has no BiDi connection");
+            return;
+        }
+        try {
+            bidiDriver = target;
+            script = new Script(target);
+            inspector = new BrowsingContextInspector(target);
+            inspector.onBrowsingContextCreated(info -> {
+                if (info.getParentBrowsingContext() == null) {
+                    register(info.getId()).url = info.getUrl();
+                }
+            });
+            inspector.onBrowsingContextDestroyed(info -> windows.remove(info.getId()));
+            inspector.onBrowsingContextLoaded(navigation -> {
+                WindowInfo window = windows.get(navigation.getBrowsingContextId());
+                if (window != null) {
+                    window.url = navigation.getUrl();
+                    titleReader.execute(() -> readTitle(window));
+                }
+            });
+            inspector.onFragmentNavigated(navigation -> {
+                WindowInfo window = windows.get(navigation.getBrowsingContextId());
+                if (window != null) {
+                    window.url = navigation.getUrl();
+                }
+            });
+            loadBiDiContexts();
+        } catch (RuntimeException e) {
+            log.warn("Window registry without BiDi: " + e.getMessage());
+            close();
+        }
+    }
+
+    //All top-level contexts with their URLs in one call, then the titles
+    private void loadBiDiContexts() {
+        List<BrowsingContextInfo> contexts = new BrowsingContext(bidiDriver, driver.getWindowHandle()).getTopLevelContexts();
+        Set<String> open = ConcurrentHashMap.newKeySet();
+        for (BrowsingContextInfo context : contexts) {
+            open.add(context.getId());
+            register(context.getId()).url = context.getUrl();
+        }
+        windows.keySet().retainAll(open);
+        for (WindowInfo window : windows.values()) {
+            readTitle(window);
+        }
+    }
+
+    private void readTitle(WindowInfo window) {
+        try {
+            EvaluateResult result = script.evaluateFunctionInBrowsingContext(window.handle, "document.title", false, Optional.empty());
+            if (result instanceof EvaluateResultSuccess) {
+                window.title = ((EvaluateResultSuccess) result).getResult().getValue().map(String::valueOf).orElse("");
+            }
+        } catch (RuntimeException e) {
+            //Window closed or navigating again: the next load event reads it
+        }
+    }
+
+    private WindowInfo register(String handle) {
+        return windows.computeIfAbsent(handle, key -> new WindowInfo(key, openedCounter.incrementAndGet()));
+    }
+
+    //Open windows in opening order
+    public List<WindowInfo> getWindows() {
+        if (!isBiDi()) {
+            String current = driver.getWindowHandle();
+            if (syncHandles(false)) {
+                driver.switchTo().window(current);
+            }
+        }
+        return sortedWindows();
+    }
+
+    private List<WindowInfo> sortedWindows() {
+        List<WindowInfo> sorted = new ArrayList<>(windows.values());
+        sorted.sort(Comparator.comparingLong(window -> window.openedOrder));
+        return sorted;
+    }
+
+    //Without BiDi: drop closed handles and visit new ones (or all of them); true if the driver was switched
+    private boolean syncHandles(boolean visitAll) {
+        Set<String> handles = driver.getWindowHandles();
+        windows.keySet().retainAll(handles);
+        boolean switched = false;
+        for (String handle : handles) {
+            WindowInfo window = windows.get(handle);
+            if (window == null || visitAll) {
+                markNavigation();
+                window = register(handle);
+                driver.switchTo().window(handle);
+                window.title = driver.getTitle();
+                window.url = driver.getCurrentUrl();
+                switched = true;
+            }
+        }
+        return switched;
+    }
+
+    public WindowInfo switchTo(Predicate<WindowInfo> condition, String description) {
+        markNavigation();
+        WindowInfo window = find(condition);
+        if (window == null) {
+            //Titles/URLs may have changed since they were read: refresh every window once
+            if (isBiDi()) {
+                loadBiDiContexts();
+            } else {
+                syncHandles(true);
+            }
+            window = find(condition);
+        }
+        if (window == null) {
+            throw new NoSuchWindowException("No window with " + description + " among " + sortedWindows());
+        }
+        driver.switchTo().window(window.handle);
+        if (!isBiDi() && !isConfirmed(window, condition)) {
+            //The window navigated since its title/URL were read (another one may show them now): re-read all of them
+            syncHandles(true);
+            window = find(condition);
+            if (window == null) {
+                throw new NoSuchWindowException("No window with " + description + " among " + sortedWindows());
+            }
+            driver.switchTo().window(window.handle);
+        }
+        return window;
+    }
+
+    //Without BiDi the cached title/URL may be old: read them again on the window just switched to
+    private boolean isConfirmed(WindowInfo window, Predicate<WindowInfo> condition) {
+        window.title = driver.getTitle();
+        window.url = driver.getCurrentUrl();
+        return condition.test(window);
+    }
+
+    private WindowInfo find(Predicate<WindowInfo> condition) {
+        if (!isBiDi()) {
+            syncHandles(false);
+        }
+        for (WindowInfo window : sortedWindows()) {
+            if (condition.test(window)) {
+                return window;
+            }
+        }
+        return null;
+    }
+
+    public WindowInfo switchToTitle(String title) {
+        return switchTo(window -> title.equals(window.title), "title '" + title + "'");
+    }
+
+    public WindowInfo switchToUrl(String urlPart) {
+        return switchTo(window -> window.url != null && window.url.contains(urlPart), "URL containing '" + urlPart + "'");
+    }
+
+    //The most recently opened window other than the given one, e.g. the tab a click just opened
+    public WindowInfo switchToNewest(String excludedHandle) {
+        markNavigation();
+        if (!isBiDi()) {
+            syncHandles(false);
+        }
+        List<WindowInfo> sorted = sortedWindows();
+        for (int i = sorted.size() - 1; i >= 0; i--) {
+            if (!sorted.get(i).handle.equals(excludedHandle)) {
+                driver.switchTo().window(sorted.get(i).handle);
+                return sorted.get(i);
+            }
+        }
+        throw new NoSuchWindowException("No window other than " + excludedHandle);
+    }
+
+    //With BiDi the windows are closed without switching to each one; the driver ends on the kept window
+    public void closeAllExcept(String keptHandle) {
+        markNavigation();
+        Set<String> handles = isBiDi() ? windows.keySet() : driver.getWindowHandles();
+        for (String handle : new ArrayList<>(handles)) {
+            if (handle.equals(keptHandle)) {
+                continue;
+            }
+            if (isBiDi()) {
+                new BrowsingContext(bidiDriver, handle).close();
+            } else {
+                driver.switchTo().window(handle);
+                driver.close();
+            }
+            windows.remove(handle);
+        }
+        driver.switchTo().window(keptHandle);
+    }
+
+    private void close() {
+        if (inspector != null) {
+            try {
+                inspector.close();
+            } catch (RuntimeException e) {
+                //Session already gone
+            }
+            inspector = null;
+        }
+        if (script != null) {
+            try {
+                script.close();
+            } catch (RuntimeException e) {
+                //Session already gone
+            }
+            script = null;
+        }
+    }
+}
@@ -1,13 +1,21 @@
 package reportConfig;
 
+import commons.ActionMetrics;
 import commons.BaseTest;
+import commons.DriverManager;
+import commons.GlobalConstants;
+import commons.LaunchMetrics;
+import commons.NetworkFilter;
+import io.qameta.allure.Allure;
 import io.qameta.allure.Attachment;
+import io.qameta.allure.model.StatusDetails;
 import org.openqa.selenium.OutputType;
 import org.openqa.selenium.TakesScreenshot;
 import org.openqa.selenium.WebDriver;
 import org.testng.ITestContext;
 import org.testng.ITestListener;
 import org.testng.ITestResult;
+import retryConfig.RetryAnalyzer;
 
 public class AllureTestListener extends BaseTest implements ITestListener {
 
@@ -33,12 +41,27 @@ public class AllureTestListener extends BaseTest implements ITestListener {
 		return html;
 	}
 
+	// Action timings of the finished test (-Dmetrics.enabled=true)
+	private static void attachActionMetrics(ITestResult iTestResult) {
+		if (ActionMetrics.ENABLED) {
+			AttachmentWriter.getWriter().attachJson("Action metrics of " + getTestMethodName(iTestResult),
+					ActionMetrics.endTest(iTestResult.getTestClass().getName() + "." + getTestMethodName(iTestResult)));
+		}
+	}
+
 	@Override
 	public void onTestFailure(ITestResult iTestResult) {
-		Object testClass = iTestResult.getInstance();
-		WebDriver driver = ((BaseTest) testClass).getDriver();
-		saveScreenshotPNG(iTestResult.getName(), driver);
-		saveTextLog(getTestMethodName(iTestResult) + " failed and screenshot taken!");
+		attachActionMetrics(iTestResult);
+		// Listener runs on the test's thread, so this is the failed test's own session
+		WebDriver driver = DriverManager.getDriver();
+		if (driver == null) {
+			AttachmentWriter.getWriter().attachText("Text attachment of " + getTestMethodName(iTestResult),
+					getTestMethodName(iTestResult) + " failed without a browser session");
+		} else {
+			// Screenshot, page source, console log, URL and cookies at once, bounded by evidence.timeout
+			EvidenceCollector.collect(getTestMethodName(iTestResult), driver);
+		}
+		ResultStreamWriter.getWriter().write(iTestResult);
 	}
 	
 	@Override
@@ -48,28 +71,55 @@ public class AllureTestListener extends BaseTest implements ITestListener {
 
 	@Override
 	public void onTestSkipped(ITestResult iTestResult) {
-		// TODO Auto-generated method stub
+		attachActionMetrics(iTestResult);
+		ResultStreamWriter.getWriter().write(iTestResult);
 	}
 
 	@Override
 	public void onTestFailedButWithinSuccessPercentage(ITestResult iTestResult) {
-		// TODO Auto-generated method stub
+		attachActionMetrics(iTestResult);
+		ResultStreamWriter.getWriter().write(iTestResult);
 	}
 
 	@Override
 	public void onFinish(ITestContext arg0) {
-		// TODO Auto-generated method stub
-
+		// Every attachment of this <test> must be on disk before Allure results are read
+		AttachmentWriter writer = AttachmentWriter.getWriter();
+		if (!writer.flush(GlobalConstants.ATTACHMENT_FLUSH_TIMEOUT_MILLIS)) {
+			log.warn("Attachment flush timed out");
+		}
+		log.info(writer.getMetrics());
+		log.info(LaunchMetrics.getReport());
+		if (GlobalConstants.RESULTS_STREAM) {
+			log.info(ResultStreamWriter.getWriter().getMetrics());
+		}
+		if (GlobalConstants.NETWORK_FILTER) {
+			log.info(NetworkFilter.getTotals());
+		}
+		if (ActionMetrics.ENABLED) {
+			ActionMetrics.writeRunReport();
+		}
 	}
 
 	@Override
 	public void onTestStart(ITestResult arg0) {
-		// TODO Auto-generated method stub
+		// Attempt number and retry history go on the result itself, read by onTestSuccess and the results stream
+		RetryAnalyzer.markAttempt(arg0);
 	}
 
 	@Override
 	public void onTestSuccess(ITestResult arg0) {
-		// TODO Auto-generated method stub
+		attachActionMetrics(arg0);
+		if (RetryAnalyzer.isFlakyPass(arg0)) {
+			// Mark the pass as flaky in Allure and keep the failed attempts next to it
+			Allure.getLifecycle().updateTestCase(testResult -> {
+				StatusDetails details = testResult.getStatusDetails() == null ? new StatusDetails() : testResult.getStatusDetails();
+				testResult.setStatusDetails(details.setFlaky(true));
+			});
+			AttachmentWriter.getWriter().attachText("Retry history of " + getTestMethodName(arg0),
+					String.join("\n", RetryAnalyzer.getHistory(arg0)));
+		}
+		ResultStreamWriter.getWriter().write(arg0);
 	}
 
 }
\ No newline at end of file
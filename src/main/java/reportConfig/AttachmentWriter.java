@@ -0,0 +1,211 @@
+package reportConfig;
+
+import commons.GlobalConstants;
+import io.qameta.allure.Allure;
+import io.qameta.allure.AllureLifecycle;
+import io.qameta.allure.util.PropertiesUtils;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.openqa.selenium.OutputType;
+import org.openqa.selenium.TakesScreenshot;
+import org.openqa.selenium.WebDriver;
+import org.testng.Reporter;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Base64;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class AttachmentWriter {
+	// Writes Allure attachments on a background thread.
+	// The attachment is registered on the test thread (prepareAttachment), so it always lands in the right test;
+	// only encoding and file I/O are moved off the TestNG thread.
+
+	private static final Logger log = LogManager.getLogger(AttachmentWriter.class);
+	private static final AttachmentWriter writer = new AttachmentWriter(GlobalConstants.ATTACHMENT_QUEUE_SIZE);
+
+	private final BlockingQueue<Job> queue;
+	private final Object drainMonitor = new Object();
+	private final AtomicLong pendingJobs = new AtomicLong();
+	private final AtomicLong pendingBytes = new AtomicLong();
+	private final AtomicLong peakPendingBytes = new AtomicLong();
+	private final AtomicLong peakQueueDepth = new AtomicLong();
+	private final AtomicLong writtenJobs = new AtomicLong();
+	private final AtomicLong writtenBytes = new AtomicLong();
+	private final AtomicLong writeNanos = new AtomicLong();
+	private final AtomicLong callerRuns = new AtomicLong();
+	private final AtomicLong failedJobs = new AtomicLong();
+
+	private final Path resultsDirectory;
+	private final ScreenshotProcessor screenshotProcessor;
+
+	// Writes the attachment content for a prepared source, returns the bytes written to disk
+	private interface Content {
+		long writeTo(String source) throws IOException;
+	}
+
+	private static class Job {
+		private final String source;
+		private final Content content;
+		private final long estimatedBytes;
+
+		Job(String source, Content content, long estimatedBytes) {
+			this.source = source;
+			this.content = content;
+			this.estimatedBytes = estimatedBytes;
+		}
+	}
+
+	private AttachmentWriter(int capacity) {
+		queue = new ArrayBlockingQueue<>(capacity);
+		resultsDirectory = Paths.get(PropertiesUtils.loadAllureProperties()
+				.getProperty("allure.results.directory", "allure-results"));
+		screenshotProcessor = new ScreenshotProcessor(resultsDirectory, GlobalConstants.SCREENSHOT_FORMAT,
+				GlobalConstants.SCREENSHOT_QUALITY, GlobalConstants.SCREENSHOT_MAX_WIDTH,
+				GlobalConstants.SCREENSHOT_MAX_HEIGHT, GlobalConstants.SCREENSHOT_DEDUP_DISTANCE);
+		Thread writerThread = new Thread(this::drainQueue, "allure-attachment-writer");
+		writerThread.setDaemon(true);
+		writerThread.start();
+		Runtime.getRuntime().addShutdownHook(new Thread(() -> flush(GlobalConstants.ATTACHMENT_FLUSH_TIMEOUT_MILLIS),
+				"allure-attachment-flush"));
+	}
+
+	public static AttachmentWriter getWriter() {
+		return writer;
+	}
+
+	public void attachText(String name, String text) {
+		submit(name, "text/plain", "txt", source -> writeBytes(source, text.getBytes(StandardCharsets.UTF_8)), text.length());
+	}
+
+	public void attachHtml(String name, String html) {
+		submit(name, "text/html", "html", source -> writeBytes(source, html.getBytes(StandardCharsets.UTF_8)), html.length());
+	}
+
+	public void attachJson(String name, String json) {
+		submit(name, "application/json", "json", source -> writeBytes(source, json.getBytes(StandardCharsets.UTF_8)), json.length());
+	}
+
+	// The capture itself has to happen now (browser state); decoding, scaling, dedup and the write are deferred
+	public void attachScreenshot(String name, WebDriver driver) {
+		attachScreenshot(name, ((TakesScreenshot) driver).getScreenshotAs(OutputType.BASE64));
+	}
+
+	// Screenshot captured elsewhere (EvidenceCollector), must still be called on the test's thread
+	// Type and extension are those of the compressed image, or of the PNG capture itself when it cannot be re-encoded
+	public void attachScreenshot(String name, String base64) {
+		byte[] capture;
+		try {
+			capture = Base64.getMimeDecoder().decode(base64);
+		} catch (IllegalArgumentException e) {
+			failedJobs.incrementAndGet();
+			log.warn("Screenshot " + name + " is not valid base64: " + e.getMessage());
+			return;
+		}
+		if (screenshotProcessor.canProcess(capture)) {
+			submit(name, screenshotProcessor.getMimeType(), screenshotProcessor.getFileExtension(),
+					source -> screenshotProcessor.store(source, capture), capture.length);
+		} else {
+			submit(name, "image/png", "png", source -> screenshotProcessor.storeOriginal(source, capture), capture.length);
+		}
+	}
+
+	private long writeBytes(String source, byte[] bytes) {
+		Allure.getLifecycle().writeAttachment(source, new ByteArrayInputStream(bytes));
+		return bytes.length;
+	}
+
+	private void submit(String name, String type, String fileExtension, Content content, long estimatedBytes) {
+		AllureLifecycle lifecycle = Allure.getLifecycle();
+		String source = lifecycle.prepareAttachment(name, type, fileExtension);
+		if (source == null) {
+			return;
+		}
+		ResultStreamWriter.addAttachment(Reporter.getCurrentTestResult(), name, resultsDirectory.resolve(source).toString());
+		Job job = new Job(source, content, estimatedBytes);
+
+		pendingJobs.incrementAndGet();
+		long bytes = pendingBytes.addAndGet(estimatedBytes);
+		peakPendingBytes.accumulateAndGet(bytes, Math::max);
+		try {
+			if (queue.offer(job, GlobalConstants.ATTACHMENT_OFFER_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)) {
+				peakQueueDepth.accumulateAndGet(queue.size(), Math::max);
+				return;
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		// Backpressure: queue is full, the caller writes its own attachment
+		callerRuns.incrementAndGet();
+		write(job);
+	}
+
+	private void drainQueue() {
+		while (true) {
+			try {
+				write(queue.take());
+			} catch (InterruptedException e) {
+				return;
+			}
+		}
+	}
+
+	private void write(Job job) {
+		long start = System.nanoTime();
+		try {
+			writtenBytes.addAndGet(job.content.writeTo(job.source));
+			writtenJobs.incrementAndGet();
+		} catch (Exception e) {
+			failedJobs.incrementAndGet();
+			log.warn("Could not write attachment " + job.source + ": " + e.getMessage());
+		} finally {
+			writeNanos.addAndGet(System.nanoTime() - start);
+			pendingBytes.addAndGet(-job.estimatedBytes);
+			if (pendingJobs.decrementAndGet() == 0) {
+				synchronized (drainMonitor) {
+					drainMonitor.notifyAll();
+				}
+			}
+		}
+	}
+
+	// Wait until every submitted attachment is on disk, false if the timeout expired first
+	public boolean flush(long timeoutMillis) {
+		long deadline = System.currentTimeMillis() + timeoutMillis;
+		synchronized (drainMonitor) {
+			while (pendingJobs.get() > 0) {
+				long remaining = deadline - System.currentTimeMillis();
+				if (remaining <= 0) {
+					return false;
+				}
+				try {
+					drainMonitor.wait(remaining);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					return false;
+				}
+			}
+		}
+		return true;
+	}
+
+	public String getMetrics() {
+		long written = writtenJobs.get();
+		return "Attachments written=" + written
+				+ ", bytes=" + writtenBytes.get()
+				+ ", failed=" + failedJobs.get()
+				+ ", pending=" + pendingJobs.get()
+				+ ", pendingBytes=" + pendingBytes.get()
+				+ ", peakPendingBytes=" + peakPendingBytes.get()
+				+ ", peakQueueDepth=" + peakQueueDepth.get() + "/" + GlobalConstants.ATTACHMENT_QUEUE_SIZE
+				+ ", callerRuns=" + callerRuns.get()
+				+ ", avgWriteMicros=" + (written == 0 ? 0 : writeNanos.get() / written / 1000)
+				+ "; " + screenshotProcessor.getMetrics();
+	}
+}
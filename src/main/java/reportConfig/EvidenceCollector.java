@@ -0,0 +1,175 @@
+package reportConfig;
+
+import commons.GlobalConstants;
+import org.openqa.selenium.Cookie;
+import org.openqa.selenium.OutputType;
+import org.openqa.selenium.TakesScreenshot;
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.logging.LogEntry;
+import org.openqa.selenium.logging.LogType;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+public class EvidenceCollector {
+	// Failure evidence (screenshot, URL, page source, console log, cookies) is read from the browser in parallel,
+	// at most EVIDENCE_PARALLELISM items at a time. Each item has EVIDENCE_ITEM_TIMEOUT_MILLIS from its own start and
+	// the collection stops waiting at EVIDENCE_TIMEOUT_MILLIS: whatever is back in time is attached, the rest is only
+	// named in the summary. A dead or wedged session costs the test thread at most the overall budget; reader threads
+	// stuck on it are daemons and end with the driver's HTTP timeout.
+	// Attachments are registered on the calling (test) thread, so they land in the failed test.
+
+	private static final ExecutorService readers = Executors.newCachedThreadPool(runnable -> {
+		Thread thread = new Thread(runnable, "evidence-reader");
+		thread.setDaemon(true);
+		return thread;
+	});
+	private static final long ITEM_TIMEOUT_NANOS = TimeUnit.MILLISECONDS.toNanos(GlobalConstants.EVIDENCE_ITEM_TIMEOUT_MILLIS);
+
+	// In order of importance: the first ones get a reader first
+	private enum Item {
+		SCREENSHOT("Screenshot"),
+		URL("URL"),
+		PAGE_SOURCE("Page source"),
+		CONSOLE_LOG("Console log"),
+		COOKIES("Cookies");
+
+		private final String label;
+
+		Item(String label) {
+			this.label = label;
+		}
+	}
+
+	private static class Evidence {
+		private final Item item;
+		private final Future<String> value;
+		private volatile boolean started;
+		private volatile long startNanos;
+		private volatile long millis = -1;
+
+		// permits: shared by the items of one collection, so readers stuck on a wedged session never block the next one
+		Evidence(Item item, Callable<String> reader, Semaphore permits) {
+			this.item = item;
+			this.value = readers.submit(() -> {
+				permits.acquire();
+				try {
+					startNanos = System.nanoTime();
+					started = true;
+					return reader.call();
+				} finally {
+					millis = (System.nanoTime() - startNanos) / 1_000_000;
+					permits.release();
+				}
+			});
+		}
+
+		// Its own deadline once it runs; until then it cannot end before now + the item timeout
+		long getDeadline(long now, long overallDeadline) {
+			return Math.min(overallDeadline, (started ? startNanos : now) + ITEM_TIMEOUT_NANOS);
+		}
+	}
+
+	private EvidenceCollector() {
+	}
+
+	// Collects and attaches the evidence of a failed test, returns the summary that was attached with it
+	public static String collect(String testName, WebDriver driver) {
+		long start = System.nanoTime();
+		long deadline = start + TimeUnit.MILLISECONDS.toNanos(GlobalConstants.EVIDENCE_TIMEOUT_MILLIS);
+		Semaphore permits = new Semaphore(Math.max(1, GlobalConstants.EVIDENCE_PARALLELISM));
+		List<Evidence> evidence = new ArrayList<>();
+		if (driver instanceof TakesScreenshot) {
+			evidence.add(new Evidence(Item.SCREENSHOT, () -> ((TakesScreenshot) driver).getScreenshotAs(OutputType.BASE64), permits));
+		}
+		evidence.add(new Evidence(Item.URL, driver::getCurrentUrl, permits));
+		evidence.add(new Evidence(Item.PAGE_SOURCE, driver::getPageSource, permits));
+		evidence.add(new Evidence(Item.CONSOLE_LOG, () -> readConsoleLog(driver), permits));
+		evidence.add(new Evidence(Item.COOKIES, () -> readCookies(driver), permits));
+
+		AttachmentWriter writer = AttachmentWriter.getWriter();
+		StringBuilder summary = new StringBuilder(testName).append(" failed, evidence:");
+		for (Evidence item : evidence) {
+			summary.append("\n  ").append(item.item.label).append(": ").append(await(writer, item, testName, deadline));
+		}
+		summary.append("\n  total: ").append((System.nanoTime() - start) / 1_000_000).append(" ms");
+		writer.attachText("Text attachment of " + testName, summary.toString());
+		return summary.toString();
+	}
+
+	// Attaches the item if it is read before its deadline, returns its summary entry
+	private static String await(AttachmentWriter writer, Evidence item, String testName, long overallDeadline) {
+		while (true) {
+			long now = System.nanoTime();
+			long itemDeadline = item.getDeadline(now, overallDeadline);
+			try {
+				String value = item.value.get(Math.max(0, itemDeadline - now), TimeUnit.NANOSECONDS);
+				attach(writer, item.item, testName, value);
+				return item.millis + " ms";
+			} catch (TimeoutException e) {
+				now = System.nanoTime();
+				if (now >= overallDeadline || (item.started && now >= item.startNanos + ITEM_TIMEOUT_NANOS)) {
+					item.value.cancel(true);
+					return item.started ? "timed out" : "not started, evidence.timeout used up";
+				}
+				// Started while we waited: wait again for its own deadline
+			} catch (ExecutionException e) {
+				return "failed (" + e.getCause().getClass().getSimpleName() + ": "
+						+ String.valueOf(e.getCause().getMessage()).split("\n")[0] + ")";
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				item.value.cancel(true);
+				return "interrupted";
+			}
+		}
+	}
+
+	private static void attach(AttachmentWriter writer, Item item, String testName, String value) {
+		String name = item.label + " of " + testName;
+		switch (item) {
+			case SCREENSHOT:
+				writer.attachScreenshot(name, value);
+				break;
+			case PAGE_SOURCE:
+				writer.attachHtml(name, value);
+				break;
+			default:
+				writer.attachText(name, value);
+				break;
+		}
+	}
+
+	// Chrome/Edge only return browser logs when started with goog:loggingPrefs (LaunchProfile sets it)
+	private static String readConsoleLog(WebDriver driver) {
+		StringBuilder log = new StringBuilder();
+		for (LogEntry entry : driver.manage().logs().get(LogType.BROWSER)) {
+			log.append(entry.getTimestamp()).append(' ').append(entry.getLevel()).append(' ').append(entry.getMessage()).append('\n');
+		}
+		return log.length() == 0 ? "(empty)" : log.toString();
+	}
+
+	// Values are session and auth tokens: masked unless -Devidence.cookieValues=true
+	private static String readCookies(WebDriver driver) {
+		StringBuilder cookies = new StringBuilder();
+		for (Cookie cookie : driver.manage().getCookies()) {
+			String value = GlobalConstants.EVIDENCE_COOKIE_VALUES ? cookie.getValue()
+					: "<masked, " + cookie.getValue().length() + " chars>";
+			cookies.append(cookie.getName()).append('=').append(value)
+					.append("; domain=").append(cookie.getDomain())
+					.append("; path=").append(cookie.getPath())
+					.append(cookie.getExpiry() == null ? "" : "; expires=" + cookie.getExpiry())
+					.append(cookie.isSecure() ? "; secure" : "")
+					.append(cookie.isHttpOnly() ? "; httpOnly" : "")
+					.append('\n');
+		}
+		return cookies.length() == 0 ? "(none)" : cookies.toString();
+	}
+}
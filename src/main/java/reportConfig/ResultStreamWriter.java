@@ -0,0 +1,191 @@
+package reportConfig;
+
+import commons.GlobalConstants;
+import commons.TestDataService;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.openqa.selenium.json.Json;
+import org.openqa.selenium.json.JsonOutput;
+import org.testng.ITestResult;
+import org.testng.internal.Utils;
+import retryConfig.RetryAnalyzer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class ResultStreamWriter {
+	// Writes one JSON line per finished test to GlobalConstants.RESULTS_FILE the moment the test ends:
+	// status (PASS/FLAKY/FAIL/SKIP/RETRIED) and attempt number, timings, every failure with its full trace, attachment files and (results.stream.logs) its log.
+	// Each line is a single write on an unbuffered stream, so the file can be tailed during the run and
+	// a crashed JVM loses nothing that finished before it. What was written is dropped from the ITestResult.
+
+	// Set on the ITestResult until its line is written
+	public static final String FAILURES_ATTRIBUTE = "streamFailures";
+	public static final String ATTACHMENTS_ATTRIBUTE = "streamAttachments";
+	public static final String LOG_ATTRIBUTE = "streamLog";
+
+	private static final Logger log = LogManager.getLogger(ResultStreamWriter.class);
+	private static final ResultStreamWriter writer = new ResultStreamWriter(Paths.get(GlobalConstants.RESULTS_FILE));
+	private static final Json json = new Json();
+
+	private final Path file;
+	private final AtomicLong writtenLines = new AtomicLong();
+	private OutputStream output;
+	private boolean failed;
+
+	private ResultStreamWriter(Path file) {
+		this.file = file;
+	}
+
+	public static ResultStreamWriter getWriter() {
+		return writer;
+	}
+
+	// Attachment of the test running on this thread, listed in its line (called on the test thread)
+	@SuppressWarnings("unchecked")
+	public static void addAttachment(ITestResult result, String name, String file) {
+		if (!GlobalConstants.RESULTS_STREAM || result == null) {
+			return;
+		}
+		List<Map<String, String>> attachments = (List<Map<String, String>>) result.getAttribute(ATTACHMENTS_ATTRIBUTE);
+		if (attachments == null) {
+			attachments = new CopyOnWriteArrayList<>();
+			result.setAttribute(ATTACHMENTS_ATTRIBUTE, attachments);
+		}
+		Map<String, String> attachment = new LinkedHashMap<>();
+		attachment.put("name", name);
+		attachment.put("file", file);
+		attachments.add(attachment);
+	}
+
+	public void write(ITestResult result) {
+		if (!GlobalConstants.RESULTS_STREAM) {
+			return;
+		}
+		byte[] line = toLine(toMap(result));
+		result.removeAttribute(FAILURES_ATTRIBUTE);
+		result.removeAttribute(ATTACHMENTS_ATTRIBUTE);
+		result.removeAttribute(LOG_ATTRIBUTE);
+		append(line);
+	}
+
+	private static byte[] toLine(Map<String, Object> map) {
+		StringBuilder line = new StringBuilder(1024);
+		try (JsonOutput output = json.newOutput(line)) {
+			output.setPrettyPrint(false).write(map);
+		}
+		return line.append('\n').toString().getBytes(StandardCharsets.UTF_8);
+	}
+
+	private synchronized void append(byte[] line) {
+		if (failed) {
+			return;
+		}
+		try {
+			if (output == null) {
+				Files.createDirectories(file.toAbsolutePath().getParent());
+				output = Files.newOutputStream(file, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+				log.info("Streaming test results to " + file);
+			}
+			output.write(line);
+			writtenLines.incrementAndGet();
+		} catch (IOException e) {
+			// One warning, then the run goes on without the stream
+			failed = true;
+			log.warn("Cannot write results to " + file + ": " + e.getMessage());
+		}
+	}
+
+	private Map<String, Object> toMap(ITestResult result) {
+		Map<String, Object> map = new LinkedHashMap<>();
+		map.put("run", TestDataService.RUN_PREFIX);
+		map.put("suite", result.getTestContext().getSuite().getName());
+		map.put("test", result.getTestContext().getName());
+		map.put("class", result.getTestClass().getName());
+		map.put("method", result.getMethod().getMethodName());
+		if (result.getParameters().length > 0) {
+			List<String> parameters = new ArrayList<>();
+			for (Object parameter : result.getParameters()) {
+				parameters.add(String.valueOf(parameter));
+			}
+			map.put("parameters", parameters);
+		}
+		map.put("status", getStatus(result));
+		map.put("attempt", getAttempt(result));
+		map.put("retries", RetryAnalyzer.getRetryCount(result));
+		map.put("thread", Thread.currentThread().getName());
+		map.put("startMillis", result.getStartMillis());
+		map.put("endMillis", result.getEndMillis());
+		map.put("durationMillis", result.getEndMillis() - result.getStartMillis());
+		map.put("failures", getFailures(result));
+		Object attachments = result.getAttribute(ATTACHMENTS_ATTRIBUTE);
+		if (attachments != null) {
+			map.put("attachments", attachments);
+		}
+		Object testLog = result.getAttribute(LOG_ATTRIBUTE);
+		if (testLog != null) {
+			map.put("log", testLog);
+		}
+		return map;
+	}
+
+	// An attempt RetryAnalyzer discarded is reported by TestNG as a skip: RETRIED keeps it apart from real skips
+	private static String getStatus(ITestResult result) {
+		if (result.wasRetried()) {
+			return "RETRIED";
+		}
+		switch (result.getStatus()) {
+			case ITestResult.SUCCESS:
+				return RetryAnalyzer.isFlakyPass(result) ? "FLAKY" : "PASS";
+			case ITestResult.FAILURE:
+				return "FAIL";
+			case ITestResult.SKIP:
+				return "SKIP";
+			case ITestResult.SUCCESS_PERCENTAGE_FAILURE:
+				return "PASS_WITHIN_PERCENTAGE";
+			default:
+				return "UNKNOWN";
+		}
+	}
+
+	// 1 for the first run
+	private static int getAttempt(ITestResult result) {
+		return RetryAnalyzer.getAttempt(result);
+	}
+
+	// The separate failures when MethodListener merged several, else the test's own throwable
+	@SuppressWarnings("unchecked")
+	private static List<Map<String, Object>> getFailures(ITestResult result) {
+		List<Throwable> throwables = (List<Throwable>) result.getAttribute(FAILURES_ATTRIBUTE);
+		if (throwables == null) {
+			throwables = new ArrayList<>();
+			if (result.getThrowable() != null) {
+				throwables.add(result.getThrowable());
+			}
+		}
+		List<Map<String, Object>> failures = new ArrayList<>();
+		for (Throwable throwable : throwables) {
+			Map<String, Object> failure = new LinkedHashMap<>();
+			failure.put("type", throwable.getClass().getName());
+			failure.put("message", throwable.getMessage());
+			failure.put("trace", Utils.longStackTrace(throwable, false));
+			failures.add(failure);
+		}
+		return failures;
+	}
+
+	public String getMetrics() {
+		return "Result lines written=" + writtenLines.get() + " to " + file;
+	}
+}
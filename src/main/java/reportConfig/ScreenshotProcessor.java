@@ -0,0 +1,258 @@
+package reportConfig;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+public class ScreenshotProcessor {
+	// Downscales and re-encodes screenshots before they are stored, and stores each distinct capture once.
+	// A repeat capture (same bytes, or with maxDistance >= 0 a perceptual hash within it) becomes a hard link to the first file,
+	// so a suite failing on the same error page costs one image on disk.
+	// A capture that cannot be re-encoded (no decoder for it, no encoder for the format) is stored as it came, a PNG;
+	// canProcess decides it up front, as the attachment's file extension and type are fixed before it is written.
+
+	private static final int HASH_COLUMNS = 17;
+	private static final int HASH_ROWS = 16;
+	private static final int MAX_REMEMBERED = 512;
+
+	private final Path resultsDirectory;
+	private final String format;
+	private final float quality;
+	private final int maxWidth;
+	private final int maxHeight;
+	private final int maxDistance;
+	private final boolean encoderAvailable;
+
+	private final Map<String, Path> storedByDigest = new HashMap<>();
+	private final Deque<StoredImage> storedImages = new ArrayDeque<>();
+
+	private long capturedBytes;
+	private long storedBytes;
+	private long duplicates;
+
+	private static class StoredImage {
+		private final long[] hash;
+		private final Path path;
+
+		StoredImage(long[] hash, Path path) {
+			this.hash = hash;
+			this.path = path;
+		}
+	}
+
+	public ScreenshotProcessor(Path resultsDirectory, String format, float quality, int maxWidth, int maxHeight, int maxDistance) {
+		this.resultsDirectory = resultsDirectory;
+		this.format = format.equalsIgnoreCase("jpeg") ? "jpg" : format.toLowerCase();
+		this.quality = quality;
+		this.maxWidth = maxWidth;
+		this.maxHeight = maxHeight;
+		this.maxDistance = maxDistance;
+		this.encoderAvailable = ImageIO.getImageWritersByFormatName(this.format).hasNext();
+	}
+
+	public String getFileExtension() {
+		return format;
+	}
+
+	public String getMimeType() {
+		return format.equals("jpg") ? "image/jpeg" : "image/" + format;
+	}
+
+	// Reads the image header only: true if store() can decode the capture and write it in the configured format
+	public boolean canProcess(byte[] capture) {
+		if (!encoderAvailable) {
+			return false;
+		}
+		try (ImageInputStream stream = ImageIO.createImageInputStream(new ByteArrayInputStream(capture))) {
+			Iterator<ImageReader> readers = ImageIO.getImageReaders(stream);
+			if (!readers.hasNext()) {
+				return false;
+			}
+			ImageReader reader = readers.next();
+			try {
+				reader.setInput(stream);
+				return reader.getWidth(0) > 0 && reader.getHeight(0) > 0;
+			} finally {
+				reader.dispose();
+			}
+		} catch (IOException | RuntimeException e) {
+			return false;
+		}
+	}
+
+	// Capture canProcess rejected, written unchanged
+	public synchronized long storeOriginal(String source, byte[] capture) throws IOException {
+		Files.createDirectories(resultsDirectory);
+		Files.write(resultsDirectory.resolve(source), capture);
+		capturedBytes += capture.length;
+		storedBytes += capture.length;
+		return capture.length;
+	}
+
+	// Store the capture under the given attachment source, returns the bytes actually written (0 for a link)
+	public synchronized long store(String source, byte[] png) throws IOException {
+		Path target = resultsDirectory.resolve(source);
+		Files.createDirectories(resultsDirectory);
+		capturedBytes += png.length;
+
+		String digest = sha256(png);
+		Path existing = storedByDigest.get(digest);
+		if (existing != null) {
+			return linkTo(target, existing);
+		}
+
+		BufferedImage image = ImageIO.read(new ByteArrayInputStream(png));
+		if (image == null) {
+			// The header read in canProcess but the image did not: the original bytes are not of this attachment's type
+			throw new IOException("Screenshot could not be decoded");
+		}
+		BufferedImage scaled = downscale(image);
+
+		// Perceptual matching is opt-in: screens with the same layout hash alike even when the error text differs
+		long[] hash = maxDistance >= 0 ? differenceHash(scaled) : null;
+		if (hash != null) {
+			for (StoredImage stored : storedImages) {
+				if (distance(hash, stored.hash) <= maxDistance) {
+					storedByDigest.put(digest, stored.path);
+					return linkTo(target, stored.path);
+				}
+			}
+		}
+
+		byte[] encoded = encode(scaled);
+		Files.write(target, encoded);
+		storedBytes += encoded.length;
+		remember(digest, hash, target);
+		return encoded.length;
+	}
+
+	public synchronized String getMetrics() {
+		return "Screenshots captured bytes=" + capturedBytes
+				+ ", stored bytes=" + storedBytes
+				+ ", duplicates linked=" + duplicates;
+	}
+
+	private long linkTo(Path target, Path existing) throws IOException {
+		duplicates++;
+		try {
+			Files.createLink(target, existing);
+		} catch (IOException | UnsupportedOperationException e) {
+			// File system without hard links: fall back to a copy of the already compressed file
+			Files.copy(existing, target);
+			storedBytes += Files.size(target);
+		}
+		return 0;
+	}
+
+	private void remember(String digest, long[] hash, Path path) {
+		storedByDigest.put(digest, path);
+		storedImages.addFirst(new StoredImage(hash, path));
+		if (storedImages.size() > MAX_REMEMBERED) {
+			storedImages.removeLast();
+		}
+		if (storedByDigest.size() > MAX_REMEMBERED * 4) {
+			storedByDigest.clear();
+		}
+	}
+
+	private BufferedImage downscale(BufferedImage image) {
+		double scale = Math.min(1.0, Math.min((double) maxWidth / image.getWidth(), (double) maxHeight / image.getHeight()));
+		int width = Math.max(1, (int) Math.round(image.getWidth() * scale));
+		int height = Math.max(1, (int) Math.round(image.getHeight() * scale));
+		// JPEG has no alpha channel, always draw onto an RGB canvas
+		BufferedImage scaled = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+		Graphics2D graphics = scaled.createGraphics();
+		try {
+			graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+			graphics.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_SPEED);
+			graphics.drawImage(image, 0, 0, width, height, null);
+		} finally {
+			graphics.dispose();
+		}
+		return scaled;
+	}
+
+	private byte[] encode(BufferedImage image) throws IOException {
+		ByteArrayOutputStream output = new ByteArrayOutputStream(64 * 1024);
+		if (!format.equals("jpg")) {
+			ImageIO.write(image, format, output);
+			return output.toByteArray();
+		}
+		ImageWriter writer = ImageIO.getImageWritersByFormatName("jpg").next();
+		try (ImageOutputStream stream = ImageIO.createImageOutputStream(output)) {
+			ImageWriteParam param = writer.getDefaultWriteParam();
+			param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+			param.setCompressionQuality(quality);
+			writer.setOutput(stream);
+			writer.write(null, new IIOImage(image, null, null), param);
+		} finally {
+			writer.dispose();
+		}
+		return output.toByteArray();
+	}
+
+	// 256-bit difference hash: brightness gradient between neighbouring cells of a 17x16 grayscale thumbnail
+	private long[] differenceHash(BufferedImage image) {
+		BufferedImage thumbnail = new BufferedImage(HASH_COLUMNS, HASH_ROWS, BufferedImage.TYPE_BYTE_GRAY);
+		Graphics2D graphics = thumbnail.createGraphics();
+		try {
+			graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+			graphics.drawImage(image, 0, 0, HASH_COLUMNS, HASH_ROWS, null);
+		} finally {
+			graphics.dispose();
+		}
+		long[] hash = new long[(HASH_COLUMNS - 1) * HASH_ROWS / 64];
+		int bit = 0;
+		for (int y = 0; y < HASH_ROWS; y++) {
+			for (int x = 0; x < HASH_COLUMNS - 1; x++) {
+				int left = thumbnail.getRaster().getSample(x, y, 0);
+				int right = thumbnail.getRaster().getSample(x + 1, y, 0);
+				if (left > right) {
+					hash[bit / 64] |= 1L << (bit % 64);
+				}
+				bit++;
+			}
+		}
+		return hash;
+	}
+
+	private int distance(long[] first, long[] second) {
+		int distance = 0;
+		for (int i = 0; i < first.length; i++) {
+			distance += Long.bitCount(first[i] ^ second[i]);
+		}
+		return distance;
+	}
+
+	private String sha256(byte[] bytes) {
+		try {
+			byte[] digest = MessageDigest.getInstance("SHA-256").digest(bytes);
+			StringBuilder hex = new StringBuilder(digest.length * 2);
+			for (byte b : digest) {
+				hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+			}
+			return hex.toString();
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+}
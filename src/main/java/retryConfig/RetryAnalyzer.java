@@ -1,5 +1,191 @@
 package retryConfig;
 
-public class RetryAnalyzer {
+import commons.DriverManager;
+import commons.DriverPool;
+import commons.DriverSession;
+import commons.GlobalConstants;
+import commons.MethodListener;
+import commons.VerificationFailures;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.openqa.selenium.NoSuchSessionException;
+import org.openqa.selenium.ScriptTimeoutException;
+import org.openqa.selenium.SessionNotCreatedException;
+import org.openqa.selenium.StaleElementReferenceException;
+import org.openqa.selenium.TimeoutException;
+import org.openqa.selenium.WebDriverException;
+import org.openqa.selenium.remote.UnreachableBrowserException;
+import org.testng.IRetryAnalyzer;
+import org.testng.ITestResult;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class RetryAnalyzer implements IRetryAnalyzer {
+	// Retries infrastructure failures only (timeouts, stale elements, crashed sessions), never assertion failures.
+	// Every suite has one retry budget, so a real outage fails fast instead of doubling the runtime.
+
+	public static final String RETRY_HISTORY_ATTRIBUTE = "retryHistory";
+	public static final String ATTEMPT_ATTRIBUTE = "retryAttempt";
+
+	private static final Logger log = LogManager.getLogger(RetryAnalyzer.class);
+	private static final Map<String, AtomicInteger> suiteBudgets = new ConcurrentHashMap<>();
+
+	public enum FailureType {
+		TIMEOUT(GlobalConstants.RETRY_TIMEOUT_MAX),
+		STALE_ELEMENT(GlobalConstants.RETRY_STALE_MAX),
+		SESSION(GlobalConstants.RETRY_SESSION_MAX),
+		NOT_RETRYABLE(0);
+
+		private final int maxRetries;
+
+		FailureType(int maxRetries) {
+			this.maxRetries = maxRetries;
+		}
+
+		public static FailureType classify(Throwable throwable) {
+			if (throwable instanceof MethodListener.MultipleFailures) {
+				return classifyAll(((MethodListener.MultipleFailures) throwable).getFailures());
+			}
+			for (Throwable cause = throwable; cause != null; cause = cause.getCause()) {
+				if (cause instanceof AssertionError) {
+					return NOT_RETRYABLE;
+				}
+				if (cause instanceof NoSuchSessionException || cause instanceof SessionNotCreatedException
+						|| cause instanceof UnreachableBrowserException || isSessionCrash(cause)) {
+					return SESSION;
+				}
+				if (cause instanceof StaleElementReferenceException) {
+					return STALE_ELEMENT;
+				}
+				if (cause instanceof TimeoutException || cause instanceof ScriptTimeoutException) {
+					return TIMEOUT;
+				}
+			}
+			return NOT_RETRYABLE;
+		}
+
+		// Several verify* failures: retried only if every one of them is retryable, a crashed session first
+		private static FailureType classifyAll(List<Throwable> failures) {
+			FailureType merged = NOT_RETRYABLE;
+			for (Throwable failure : failures) {
+				FailureType type = classify(failure);
+				if (type == NOT_RETRYABLE) {
+					return NOT_RETRYABLE;
+				}
+				if (merged != SESSION) {
+					merged = type;
+				}
+			}
+			return merged;
+		}
+
+		private static boolean isSessionCrash(Throwable throwable) {
+			if (!(throwable instanceof WebDriverException) || throwable.getMessage() == null) {
+				return false;
+			}
+			String message = throwable.getMessage().toLowerCase();
+			return message.contains("session deleted") || message.contains("not reachable")
+					|| message.contains("disconnected") || message.contains("invalid session id");
+		}
+	}
+
+	private final Map<FailureType, Integer> retriesByType = new EnumMap<>(FailureType.class);
+	private final List<String> history = Collections.synchronizedList(new ArrayList<>());
+
+	@Override
+	public boolean retry(ITestResult result) {
+		FailureType type = FailureType.classify(result.getThrowable());
+		int retries = retriesByType.getOrDefault(type, 0);
+		if (retries >= type.maxRetries) {
+			return false;
+		}
+		if (getSuiteBudget(result).getAndDecrement() <= 0) {
+			log.warn("Retry budget of suite exhausted, not retrying " + result.getName() + " (" + type + ")");
+			return false;
+		}
+		retriesByType.put(type, retries + 1);
+		history.add("Attempt " + (history.size() + 1) + " failed with " + type + ": " + result.getThrowable());
+		log.info("Retrying " + result.getName() + " after " + type + " (" + (retries + 1) + "/" + type.maxRetries + ")");
+
+		// Failures of the discarded attempt must not leak into the next one
+		VerificationFailures.getFailures().removeFailuresForTest(result);
+		// Every retry starts on a clean session: a crashed one is replaced, any other one is reset
+		refreshSession(type == FailureType.SESSION);
+		return true;
+	}
+
+	public int getRetryCount() {
+		return history.size();
+	}
+
+	public List<String> getHistory() {
+		return new ArrayList<>(history);
+	}
+
+	// Called when an attempt starts: retry() of every earlier attempt has returned by then, so the attempt number and
+	// history stored on the result do not depend on the order listeners run in when it ends
+	public static void markAttempt(ITestResult result) {
+		List<String> history = getHistory(result);
+		result.setAttribute(ATTEMPT_ATTRIBUTE, history.size() + 1);
+		if (!history.isEmpty()) {
+			result.setAttribute(RETRY_HISTORY_ATTRIBUTE, history);
+		}
+	}
+
+	// 1 for the first run of a test; from the retry count when the attempt was not marked
+	public static int getAttempt(ITestResult result) {
+		Object attempt = result.getAttribute(ATTEMPT_ATTRIBUTE);
+		if (attempt instanceof Integer) {
+			return (Integer) attempt;
+		}
+		// A retried attempt is already in the retry history when it ends
+		return result.wasRetried() ? getRetryCount(result) : getRetryCount(result) + 1;
+	}
+
+	// The test passed, but only after at least one retry
+	public static boolean isFlakyPass(ITestResult result) {
+		return result.isSuccess() && getAttempt(result) > 1;
+	}
+
+	public static int getRetryCount(ITestResult result) {
+		IRetryAnalyzer analyzer = result.getMethod().getRetryAnalyzer(result);
+		return analyzer instanceof RetryAnalyzer ? ((RetryAnalyzer) analyzer).getRetryCount() : 0;
+	}
+
+	// Failed attempts before this one: stored on the result when it was marked, else read from its analyzer
+	@SuppressWarnings("unchecked")
+	public static List<String> getHistory(ITestResult result) {
+		Object history = result.getAttribute(RETRY_HISTORY_ATTRIBUTE);
+		if (history instanceof List) {
+			return (List<String>) history;
+		}
+		IRetryAnalyzer analyzer = result.getMethod().getRetryAnalyzer(result);
+		return analyzer instanceof RetryAnalyzer ? ((RetryAnalyzer) analyzer).getHistory() : Collections.emptyList();
+	}
+
+	private static AtomicInteger getSuiteBudget(ITestResult result) {
+		String suiteName = result.getTestContext().getSuite().getName();
+		return suiteBudgets.computeIfAbsent(suiteName, name -> new AtomicInteger(GlobalConstants.RETRY_SUITE_BUDGET));
+	}
+
+	// The driver of the test class (SessionDriver) follows the session set here, so page objects built in
+	// @BeforeClass run the retry on the new or reset session
+	private static void refreshSession(boolean crashed) {
+		DriverSession session = DriverManager.getSession();
+		if (session == null) {
+			return;
+		}
+		try {
+			DriverManager.setSession(crashed ? DriverPool.renew(session) : DriverPool.refresh(session));
+		} catch (RuntimeException e) {
+			DriverManager.removeSession();
+			log.warn("Could not start a new session for the retry: " + e.getMessage());
+		}
+	}
 }
@@ -0,0 +1,19 @@
+package retryConfig;
+
+import org.testng.IAnnotationTransformer;
+import org.testng.annotations.ITestAnnotation;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+
+public class RetryListener implements IAnnotationTransformer {
+	// Gives every @Test the RetryAnalyzer unless the test already declares its own
+
+	@Override
+	public void transform(ITestAnnotation annotation, Class testClass, Constructor testConstructor, Method testMethod) {
+		if (annotation.getRetryAnalyzerClass() == null
+				|| annotation.getRetryAnalyzerClass().getName().startsWith("org.testng")) {
+			annotation.setRetryAnalyzer(RetryAnalyzer.class);
+		}
+	}
+}
@@ -0,0 +1,126 @@
+package scheduleConfig;
+
+import commons.GlobalConstants;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class DurationHistory {
+	// Test class durations of past runs, one smoothed value (EWMA) per class in a local properties file.
+	// A class's duration includes its configuration methods: browser startup in @BeforeClass is part of its cost.
+
+	private static final Logger log = LogManager.getLogger(DurationHistory.class);
+	private static final DurationHistory history = new DurationHistory(Paths.get(GlobalConstants.SCHEDULE_HISTORY_FILE));
+
+	private final Path file;
+	private final Map<String, Long> estimates = new ConcurrentHashMap<>();
+	private final Map<String, AtomicLong> currentRun = new ConcurrentHashMap<>();
+
+	DurationHistory(Path file) {
+		this.file = file;
+		load();
+	}
+
+	public static DurationHistory getHistory() {
+		return history;
+	}
+
+	// Expected duration in millis; a class never seen before counts as an average one
+	public long estimate(String className) {
+		Long estimate = estimates.get(className);
+		return estimate != null ? estimate : averageEstimate();
+	}
+
+	public boolean isKnown(String className) {
+		return estimates.containsKey(className);
+	}
+
+	public long averageEstimate() {
+		Collection<Long> known = estimates.values();
+		if (known.isEmpty()) {
+			return 0;
+		}
+		long total = 0;
+		for (long estimate : known) {
+			total += estimate;
+		}
+		return total / known.size();
+	}
+
+	void record(String className, long millis) {
+		currentRun.computeIfAbsent(className, key -> new AtomicLong()).addAndGet(Math.max(0, millis));
+	}
+
+	// Fold this run into the history and write it; another run may have written in between, so re-read first.
+	// Shards of one run save at the same time: a lock file makes their read-merge-write steps take turns.
+	synchronized void save() {
+		if (currentRun.isEmpty()) {
+			return;
+		}
+		try {
+			if (file.getParent() != null) {
+				Files.createDirectories(file.getParent());
+			}
+			Path lockFile = file.resolveSibling(file.getFileName() + ".lock");
+			try (FileChannel channel = FileChannel.open(lockFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+					FileLock lock = channel.lock()) {
+				load();
+				double alpha = GlobalConstants.SCHEDULE_EWMA_ALPHA;
+				currentRun.forEach((className, millis) -> estimates.merge(className, millis.get(),
+						(previous, latest) -> Math.round(alpha * latest + (1 - alpha) * previous)));
+				currentRun.clear();
+				write();
+			}
+		} catch (IOException e) {
+			log.warn("Cannot write duration history " + file + ": " + e.getMessage());
+		}
+	}
+
+	private void write() throws IOException {
+		Properties properties = new Properties();
+		new TreeMap<>(estimates).forEach((className, millis) -> properties.setProperty(className, String.valueOf(millis)));
+		// Write + rename, so a parallel run never reads half a file
+		Path temp = Files.createTempFile(file.getParent() != null ? file.getParent() : Paths.get("."), "durations", ".tmp");
+		try (Writer writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+			properties.store(writer, "Test class durations in millis (EWMA), used by DurationScheduler");
+		}
+		Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	private void load() {
+		if (!Files.isRegularFile(file)) {
+			return;
+		}
+		Properties properties = new Properties();
+		try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+			properties.load(reader);
+		} catch (IOException e) {
+			log.warn("Cannot read duration history " + file + ": " + e.getMessage());
+			return;
+		}
+		for (String className : properties.stringPropertyNames()) {
+			try {
+				estimates.put(className, Long.parseLong(properties.getProperty(className).trim()));
+			} catch (NumberFormatException e) {
+				// Hand-edited or corrupt line, the class is simply unknown
+			}
+		}
+	}
+}
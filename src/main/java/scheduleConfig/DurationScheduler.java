@@ -0,0 +1,159 @@
+package scheduleConfig;
+
+import commons.GlobalConstants;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.testng.IConfigurationListener;
+import org.testng.IMethodInstance;
+import org.testng.IMethodInterceptor;
+import org.testng.ISuite;
+import org.testng.ISuiteListener;
+import org.testng.ITestContext;
+import org.testng.ITestNGMethod;
+import org.testng.ITestListener;
+import org.testng.ITestResult;
+import org.testng.xml.XmlSuite;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+public class DurationScheduler implements IMethodInterceptor, ITestListener, IConfigurationListener, ISuiteListener {
+	// Hands out test classes longest-first (by DurationHistory), so a slow class starts early instead of
+	// holding up the end of the run; each worker then picks the longest class left (LPT).
+	// Methods of a class keep TestNG's order, only whole classes are moved.
+
+	private static final Logger log = LogManager.getLogger(DurationScheduler.class);
+
+	@Override
+	public List<IMethodInstance> intercept(List<IMethodInstance> methods, ITestContext context) {
+		Map<String, List<IMethodInstance>> methodsByClass = new LinkedHashMap<>();
+		for (IMethodInstance method : methods) {
+			methodsByClass.computeIfAbsent(getClassName(method.getMethod()), key -> new ArrayList<>()).add(method);
+		}
+		List<String> classNames = sortLongestFirst(new ArrayList<>(methodsByClass.keySet()));
+
+		List<IMethodInstance> ordered = new ArrayList<>(methods.size());
+		for (String className : classNames) {
+			ordered.addAll(methodsByClass.get(className));
+		}
+		logPlan(context, classNames);
+		return ordered;
+	}
+
+	// Stable sort: classes with the same estimate (e.g. no history yet) keep the suite order
+	public static List<String> sortLongestFirst(List<String> classNames) {
+		DurationHistory history = DurationHistory.getHistory();
+		classNames.sort(Comparator.comparingLong(history::estimate).reversed());
+		return classNames;
+	}
+
+	// Longest processing time first: each class goes to the least loaded worker
+	public static List<List<String>> partition(List<String> classNames, int workers) {
+		DurationHistory history = DurationHistory.getHistory();
+		List<List<String>> bins = new ArrayList<>();
+		long[] loads = new long[Math.max(1, workers)];
+		for (int i = 0; i < loads.length; i++) {
+			bins.add(new ArrayList<>());
+		}
+		for (String className : sortLongestFirst(new ArrayList<>(classNames))) {
+			int lightest = 0;
+			for (int i = 1; i < loads.length; i++) {
+				if (loads[i] < loads[lightest]) {
+					lightest = i;
+				}
+			}
+			bins.get(lightest).add(className);
+			// At least 1: without any history every estimate is 0 and the classes are dealt round-robin
+			loads[lightest] += Math.max(1, history.estimate(className));
+		}
+		return bins;
+	}
+
+	private void logPlan(ITestContext context, List<String> classNames) {
+		DurationHistory history = DurationHistory.getHistory();
+		int workers = getWorkers(context);
+		long total = 0;
+		long makespan = 0;
+		for (List<String> bin : partition(classNames, workers)) {
+			long load = 0;
+			for (String className : bin) {
+				load += history.estimate(className);
+			}
+			total += load;
+			makespan = Math.max(makespan, load);
+		}
+		long unknown = classNames.stream().filter(className -> !history.isKnown(className)).count();
+		log.info("Scheduled " + classNames.size() + " classes of '" + context.getName() + "' longest-first on " + workers
+				+ " workers: expected " + String.format("%.1f", makespan / 1000.0) + "s wall clock for "
+				+ String.format("%.1f", total / 1000.0) + "s of tests"
+				+ (unknown > 0 ? " (" + unknown + " classes without history)" : ""));
+	}
+
+	// Parallel workers of this <test>, never more than the browser pool can serve
+	private static int getWorkers(ITestContext context) {
+		XmlSuite.ParallelMode parallel = context.getCurrentXmlTest().getParallel();
+		if (parallel == null || !parallel.isParallel()) {
+			return 1;
+		}
+		return Math.max(1, Math.min(context.getCurrentXmlTest().getThreadCount(), GlobalConstants.BROWSER_SLOTS));
+	}
+
+	private static String getClassName(ITestNGMethod method) {
+		return method.getTestClass() != null ? method.getTestClass().getName() : method.getRealClass().getName();
+	}
+
+	private static void record(ITestResult result) {
+		DurationHistory.getHistory().record(getClassName(result.getMethod()), result.getEndMillis() - result.getStartMillis());
+	}
+
+	@Override
+	public void onTestSuccess(ITestResult result) {
+		record(result);
+	}
+
+	@Override
+	public void onTestFailure(ITestResult result) {
+		record(result);
+	}
+
+	@Override
+	public void onTestSkipped(ITestResult result) {
+		record(result);
+	}
+
+	@Override
+	public void onConfigurationSuccess(ITestResult result) {
+		recordConfiguration(result);
+	}
+
+	@Override
+	public void onConfigurationFailure(ITestResult result) {
+		recordConfiguration(result);
+	}
+
+	@Override
+	public void onConfigurationSkip(ITestResult result) {
+		recordConfiguration(result);
+	}
+
+	// Only class and method level configuration belongs to a class; suite/test setup runs once for everyone
+	private static void recordConfiguration(ITestResult result) {
+		ITestNGMethod method = result.getMethod();
+		if (method.isBeforeClassConfiguration() || method.isAfterClassConfiguration()
+				|| method.isBeforeMethodConfiguration() || method.isAfterMethodConfiguration()) {
+			record(result);
+		}
+	}
+
+	@Override
+	public void onStart(ISuite suite) {
+	}
+
+	@Override
+	public void onFinish(ISuite suite) {
+		DurationHistory.getHistory().save();
+	}
+}
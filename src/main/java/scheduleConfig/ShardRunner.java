@@ -0,0 +1,308 @@
+package scheduleConfig;
+
+import commons.DriverBinaryCache;
+import commons.GlobalConstants;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.testng.xml.XmlClass;
+import org.testng.xml.XmlSuite;
+import org.testng.xml.XmlTest;
+import org.testng.xml.internal.Parser;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.StringJoiner;
+
+public class ShardRunner {
+	// Runs a suite XML in GlobalConstants.SHARD_COUNT forked JVMs: mvn test -Pshards -Dshard.count=4
+	// Classes are split longest-first over the shards (DurationScheduler.partition), so the slices are the same
+	// for the same history. Each JVM gets its own allure-json/shard-N and logs/shard-N; a crashed browser or JVM
+	// only takes its own shard down. At the end the Allure results and result streams are merged into one.
+
+	private static final Logger log = LogManager.getLogger(ShardRunner.class);
+
+	// Set per shard, never forwarded from this JVM
+	private static final Set<String> SHARD_PROPERTIES = new HashSet<>(Arrays.asList(
+			"shard.index", "shard.count", "allure.results.directory", "logs.dir", "results.file", "browser.slots"));
+	// JVM, OS and Maven properties; everything else given with -D goes to the shards
+	private static final List<String> LOCAL_PREFIXES = Arrays.asList(
+			"java.", "jdk.", "sun.", "os.", "user.", "file.", "line.", "path.", "native.", "awt.", "maven.",
+			"classworlds.", "library.", "jansi.", "guice.", "exec.", "stdout.", "stderr.", "env.", "http.", "https.",
+			"ftp.", "socks", "jna.", "jnidispatch.", "org.slf4j.", "log4j", "style.");
+
+	private ShardRunner() {
+	}
+
+	public static void main(String[] args) throws Exception {
+		String suiteFile = args.length > 0 ? args[0] : "src/test/resources/Run.xml";
+		int shards = Math.max(1, GlobalConstants.SHARD_COUNT);
+		Path workDirectory = Paths.get(GlobalConstants.RELATIVE_PROJECT_PATH, "target", "shards");
+		Path allureDirectory = Paths.get(GlobalConstants.RELATIVE_PROJECT_PATH, GlobalConstants.ALLURE_RESULTS_DIR);
+
+		XmlSuite suite = parse(suiteFile);
+		List<String> classNames = getClassNames(suite);
+		// Downloads happen once here, the shards then find every driver in the cache
+		if (GlobalConstants.DRIVER_CACHE) {
+			DriverBinaryCache.preflight(DriverBinaryCache.getConfiguredBrowsers(suite));
+		}
+		List<List<String>> slices = DurationScheduler.partition(classNames, shards);
+		prepareDirectories(workDirectory, allureDirectory, shards);
+
+		long start = System.currentTimeMillis();
+		List<Shard> running = new ArrayList<>();
+		for (int index = 0; index < shards; index++) {
+			if (slices.get(index).isEmpty()) {
+				log.info("Shard " + index + " has no classes, not started");
+				continue;
+			}
+			Path shardSuite = writeShardSuite(suiteFile, slices.get(index), index, shards, workDirectory);
+			running.add(new Shard(index, slices.get(index).size(), launch(shardSuite, index, shards, workDirectory)));
+		}
+		log.info("Started " + running.size() + " shards for " + classNames.size() + " classes of " + suiteFile);
+
+		int failed = 0;
+		long shardMillis = 0;
+		for (Shard shard : running) {
+			int exitCode = shard.process.waitFor();
+			long millis = System.currentTimeMillis() - shard.startMillis;
+			shardMillis += millis;
+			log.info("Shard " + shard.index + " (" + shard.classes + " classes) finished in "
+					+ String.format("%.1f", millis / 1000.0) + "s with exit code " + exitCode
+					+ ", output in " + workDirectory.resolve("shard-" + shard.index));
+			if (exitCode != 0) {
+				failed++;
+			}
+		}
+		long wallMillis = System.currentTimeMillis() - start;
+
+		mergeAllureResults(allureDirectory, shards);
+		mergeResultStreams(shards);
+		log.info("Sharded run took " + String.format("%.1f", wallMillis / 1000.0) + "s wall clock for "
+				+ String.format("%.1f", shardMillis / 1000.0) + "s of shard time; merged results in " + allureDirectory);
+		if (failed > 0) {
+			// Exit code 1 also means failed tests: the merged report has the details
+			throw new IllegalStateException(failed + " of " + running.size() + " shards failed, see " + allureDirectory);
+		}
+	}
+
+	private static class Shard {
+		private final int index;
+		private final int classes;
+		private final Process process;
+		private final long startMillis = System.currentTimeMillis();
+
+		Shard(int index, int classes, Process process) {
+			this.index = index;
+			this.classes = classes;
+			this.process = process;
+		}
+	}
+
+	private static XmlSuite parse(String suiteFile) throws IOException {
+		Collection<XmlSuite> suites = new Parser(suiteFile).parse();
+		if (suites.isEmpty()) {
+			throw new IllegalArgumentException("No suite in " + suiteFile);
+		}
+		return suites.iterator().next();
+	}
+
+	// Classes of all <test>s in suite order; packages and blank entries are not sharded
+	private static List<String> getClassNames(XmlSuite suite) {
+		Set<String> classNames = new LinkedHashSet<>();
+		for (XmlTest test : suite.getTests()) {
+			if (!test.getPackages().isEmpty()) {
+				log.warn("<packages> of test '" + test.getName() + "' are not sharded, list the classes instead");
+			}
+			for (XmlClass xmlClass : test.getClasses()) {
+				if (xmlClass.getName() != null && !xmlClass.getName().trim().isEmpty()) {
+					classNames.add(xmlClass.getName());
+				}
+			}
+		}
+		return new ArrayList<>(classNames);
+	}
+
+	// The same suite (parameters, listeners, tests) with only this shard's classes
+	private static Path writeShardSuite(String suiteFile, List<String> slice, int index, int shards, Path workDirectory) throws IOException {
+		XmlSuite suite = parse(suiteFile);
+		suite.setName(suite.getName() + " [shard " + (index + 1) + "/" + shards + "]");
+		Set<String> sliceClasses = new HashSet<>(slice);
+		List<XmlTest> tests = new ArrayList<>();
+		for (XmlTest test : suite.getTests()) {
+			List<XmlClass> classes = new ArrayList<>();
+			for (XmlClass xmlClass : test.getClasses()) {
+				if (sliceClasses.contains(xmlClass.getName())) {
+					classes.add(xmlClass);
+				}
+			}
+			if (!classes.isEmpty()) {
+				test.setXmlClasses(classes);
+				test.setXmlPackages(new ArrayList<>());
+				tests.add(test);
+			}
+		}
+		suite.setTests(tests);
+		Path file = workDirectory.resolve("suite-shard-" + index + ".xml");
+		Files.write(file, suite.toXml().getBytes(StandardCharsets.UTF_8));
+		return file;
+	}
+
+	private static Process launch(Path shardSuite, int index, int shards, Path workDirectory) throws IOException {
+		Path outputDirectory = workDirectory.resolve("shard-" + index);
+		Files.createDirectories(outputDirectory);
+
+		List<String> command = new ArrayList<>();
+		command.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+		for (String name : System.getProperties().stringPropertyNames()) {
+			if (isForwarded(name)) {
+				command.add("-D" + name + "=" + System.getProperty(name));
+			}
+		}
+		// The machine's browser slots are shared by all shards unless -Dbrowser.slots says otherwise
+		int browserSlots = Integer.getInteger("browser.slots", Math.max(1, Runtime.getRuntime().availableProcessors() / shards));
+		command.add("-Dbrowser.slots=" + browserSlots);
+		command.add("-Dshard.index=" + index);
+		command.add("-Dshard.count=" + shards);
+		command.add("-Dallure.results.directory=" + getShardAllureDirectory(index));
+		command.add("-Dlogs.dir=" + GlobalConstants.LOGS_DIR + "/shard-" + index);
+		command.add("-Dresults.file=" + getShardResultsFile(index));
+		command.add("-cp");
+		command.add(getClasspath());
+		command.add("org.testng.TestNG");
+		command.add("-d");
+		command.add(outputDirectory.resolve("testng-output").toString());
+		command.add(shardSuite.toString());
+
+		return new ProcessBuilder(command)
+				.directory(new File(GlobalConstants.RELATIVE_PROJECT_PATH))
+				.redirectErrorStream(true)
+				.redirectOutput(outputDirectory.resolve("console.log").toFile())
+				.start();
+	}
+
+	private static boolean isForwarded(String name) {
+		if (SHARD_PROPERTIES.contains(name)) {
+			return false;
+		}
+		for (String prefix : LOCAL_PREFIXES) {
+			if (name.startsWith(prefix)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	// Under exec:java the project classpath is the plugin's class loader, not java.class.path
+	private static String getClasspath() {
+		ClassLoader loader = Thread.currentThread().getContextClassLoader();
+		if (loader instanceof URLClassLoader) {
+			StringJoiner classpath = new StringJoiner(File.pathSeparator);
+			for (URL url : ((URLClassLoader) loader).getURLs()) {
+				try {
+					classpath.add(Paths.get(url.toURI()).toString());
+				} catch (URISyntaxException | IllegalArgumentException e) {
+					classpath.add(url.getPath());
+				}
+			}
+			return classpath.toString();
+		}
+		return System.getProperty("java.class.path");
+	}
+
+	private static String getShardAllureDirectory(int index) {
+		return GlobalConstants.ALLURE_RESULTS_DIR + "/shard-" + index;
+	}
+
+	// "results.jsonl" -> "results-shard<N>.jsonl" in the same folder
+	private static Path getShardResultsFile(int index) {
+		Path merged = Paths.get(GlobalConstants.RESULTS_FILE).toAbsolutePath();
+		String name = merged.getFileName().toString();
+		int extension = name.lastIndexOf('.');
+		String shardName = extension > 0
+				? name.substring(0, extension) + "-shard" + index + name.substring(extension)
+				: name + "-shard" + index;
+		return merged.resolveSibling(shardName);
+	}
+
+	// Shards clean only their own folders, so the shared ones are emptied before any shard starts
+	private static void prepareDirectories(Path workDirectory, Path allureDirectory, int shards) throws IOException {
+		Files.createDirectories(workDirectory);
+		Files.createDirectories(allureDirectory);
+		deleteFiles(allureDirectory);
+		deleteFiles(Paths.get(GlobalConstants.RELATIVE_PROJECT_PATH, "reportNGImage"));
+		for (int index = 0; index < shards; index++) {
+			Path shardDirectory = Paths.get(GlobalConstants.RELATIVE_PROJECT_PATH, getShardAllureDirectory(index));
+			Files.createDirectories(shardDirectory);
+			deleteFiles(shardDirectory);
+			deleteFiles(Paths.get(GlobalConstants.RELATIVE_PROJECT_PATH, GlobalConstants.LOGS_DIR, "shard-" + index));
+		}
+	}
+
+	private static void deleteFiles(Path directory) throws IOException {
+		if (!Files.isDirectory(directory)) {
+			return;
+		}
+		try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, Files::isRegularFile)) {
+			for (Path file : files) {
+				if (!file.getFileName().toString().equals("environment.properties")) {
+					Files.delete(file);
+				}
+			}
+		}
+	}
+
+	// Allure result and attachment files have unique names, so the shard folders are moved into one
+	private static void mergeAllureResults(Path allureDirectory, int shards) throws IOException {
+		long moved = 0;
+		for (int index = 0; index < shards; index++) {
+			Path shardDirectory = Paths.get(GlobalConstants.RELATIVE_PROJECT_PATH, getShardAllureDirectory(index));
+			if (!Files.isDirectory(shardDirectory)) {
+				continue;
+			}
+			try (DirectoryStream<Path> files = Files.newDirectoryStream(shardDirectory, Files::isRegularFile)) {
+				for (Path file : files) {
+					Path target = allureDirectory.resolve(file.getFileName());
+					if (file.getFileName().toString().equals("environment.properties") && Files.exists(target)) {
+						continue;
+					}
+					Files.move(file, target, StandardCopyOption.REPLACE_EXISTING);
+					moved++;
+				}
+			}
+		}
+		log.info("Merged " + moved + " Allure files from " + shards + " shards into " + allureDirectory);
+	}
+
+	// One results stream for the run, shard by shard
+	private static void mergeResultStreams(int shards) throws IOException {
+		Path merged = Paths.get(GlobalConstants.RESULTS_FILE).toAbsolutePath();
+		Files.deleteIfExists(merged);
+		for (int index = 0; index < shards; index++) {
+			Path shardStream = getShardResultsFile(index);
+			if (!Files.isRegularFile(shardStream)) {
+				continue;
+			}
+			try (InputStream input = Files.newInputStream(shardStream)) {
+				Files.write(merged, input.readAllBytes(), StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+			}
+		}
+	}
+}